@@ -0,0 +1,44 @@
+#!/bin/sh
+# Build a class-data sharing (AppCDS) archive for vikings.brainstorm.Cli,
+# and compare the time to the first answer with and without it.
+#
+#   src-dev/cli-archive.sh [classes-dir] [output-dir]
+#
+# classes-dir defaults to IntelliJ's output, out/production/vikings-brainstorm,
+# and output-dir to out/cli. The archive only covers classes loaded from
+# jars, so the classes are first packed into cli.jar. Run the CLI with
+#
+#   java -XX:SharedArchiveFile=out/cli/cli.jsa -XX:TieredStopAtLevel=1 \
+#        -XX:+UseSerialGC -cp out/cli/cli.jar vikings.brainstorm.Cli solve 0
+#
+# The archive is only valid for the JVM that built it and the same jar.
+set -e
+classes=${1:-out/production/vikings-brainstorm}
+output=${2:-out/cli}
+runs=${RUNS:-20}
+mkdir -p "$output"
+jar=$output/cli.jar
+archive=$output/cli.jsa
+
+jar cf "$jar" -C "$classes" vikings
+# record the classes a typical run loads, then map them into an archive
+java -Xshare:off -XX:DumpLoadedClassList="$output/cli.classlist" -cp "$jar" vikings.brainstorm.Cli solve 0 > /dev/null
+java -Xshare:dump -XX:SharedClassListFile="$output/cli.classlist" -XX:SharedArchiveFile="$archive" \
+    -cp "$jar" > /dev/null
+
+time_runs() {
+    start=$(date +%s%N)
+    i=0
+    while [ $i -lt "$runs" ]; do
+        "$@" > /dev/null
+        i=$((i + 1))
+    done
+    echo "$(( ($(date +%s%N) - start) / runs / 1000000 )) ms  $*"
+}
+
+echo "mean wall time of $runs runs:"
+time_runs java -cp "$jar" vikings.brainstorm.Vikings
+time_runs java -cp "$jar" vikings.brainstorm.Cli solve 0
+time_runs java -XX:SharedArchiveFile="$archive" -cp "$jar" vikings.brainstorm.Cli solve 0
+time_runs java -XX:SharedArchiveFile="$archive" -XX:TieredStopAtLevel=1 -XX:+UseSerialGC \
+    -cp "$jar" vikings.brainstorm.Cli solve 0
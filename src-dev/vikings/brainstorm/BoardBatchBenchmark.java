@@ -0,0 +1,70 @@
+package vikings.brainstorm;
+
+import java.util.Random;
+
+/**
+ * Compares three ways of finding which of many random boards have
+ * overlapping tiles, and which of their tiles can be rotated:
+ * {@link Vikings#doTilesOverlap(String, int, int)} on each adjacent pair of
+ * each board string, {@link BoardBatch#isOverlapFree(long)} and
+ * {@link PackedBoard#rotatableMask(long)} on each packed board, and
+ * {@link BoardBatch#evaluate(long[], int, long[], int[])} on the whole batch.
+ * <pre>
+ *   java vikings.brainstorm.BoardBatchBenchmark [boards] [rounds]
+ * </pre>
+ * Later rounds show the times after the JIT has compiled the code.
+ */
+public class BoardBatchBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(1);
+        long[] states = new long[count];
+        String[] boardStrings = new String[count];
+        for (int i = 0; i < count; i++) {
+            // one boat on each tile's top edge, so every tile may rotate
+            states[i] = random.nextLong() & (PackedBoard.ORIENTATION_MASK | PackedBoard.TYPE_MASK)
+                    | PackedBoard.boatsFromPlacement("BaRb") << PackedBoard.BOAT_SHIFT;
+            boardStrings[i] = PackedBoard.toBoardString(states[i]);
+        }
+        long[] overlapFree = new long[(count + 63) / 64];
+        int[] rotatable = new int[count];
+
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            int valid = 0;
+            for (String boardString : boardStrings) {
+                boolean overlap = false;
+                for (int p = 0; p < Tile.NUM_POSITIONS && !overlap; p++) {
+                    overlap = p % 3 < 2 && Vikings.doTilesOverlap(boardString, p, p + 1)
+                            || p < 6 && Vikings.doTilesOverlap(boardString, p, p + 3);
+                }
+                if (!overlap)
+                    valid++;
+            }
+            long strings = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int scalarValid = 0;
+            for (int i = 0; i < count; i++) {
+                if (BoardBatch.isOverlapFree(states[i]))
+                    scalarValid++;
+                rotatable[i] = PackedBoard.rotatableMask(states[i]);
+            }
+            long scalar = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            BoardBatch.evaluate(states, count, overlapFree, rotatable);
+            int batchValid = 0;
+            for (long word : overlapFree)
+                batchValid += Long.bitCount(word);
+            long batch = System.nanoTime() - start;
+
+            if (valid != scalarValid || valid != batchValid)
+                throw new AssertionError("Counts differ: " + valid + " " + scalarValid + " " + batchValid);
+            System.out.printf("round %d: %d of %d valid; doTilesOverlap %.1f ns, scalar %.1f ns,"
+                            + " batch %.1f ns per board%n", round, valid, count, (double) strings / count,
+                    (double) scalar / count, (double) batch / count);
+        }
+    }
+}
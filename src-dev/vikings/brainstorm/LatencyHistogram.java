@@ -0,0 +1,85 @@
+package vikings.brainstorm;
+
+/**
+ * A log-linear histogram of latencies in nanoseconds, in the style of
+ * HdrHistogram: every power-of-two range is split into 64 linear buckets,
+ * so recorded values are accurate to within about 1.5% and recording is a
+ * couple of shifts and an array increment.
+ * <p>
+ * Not thread-safe; give each thread its own histogram and {@link #add} them.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_COUNT];
+    private long total;
+    private long max;
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts[index(nanos)]++;
+        total++;
+        if (nanos > max)
+            max = nanos;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        total = 0;
+        max = 0;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param percentile a percentile, 0-100
+     * @return the (upper bound of the) latency at the percentile, in nanoseconds
+     */
+    public long getValueAtPercentile(double percentile) {
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(max, upperBound(i));
+        }
+        return max;
+    }
+
+    private static int index(long value) {
+        if (value < 2 * SUB_COUNT)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_COUNT)
+            return index;
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", total,
+                getValueAtPercentile(50) / 1e3, getValueAtPercentile(90) / 1e3,
+                getValueAtPercentile(99) / 1e3, getValueAtPercentile(99.9) / 1e3, max / 1e3);
+    }
+}
@@ -0,0 +1,248 @@
+package vikings.brainstorm;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A headless load generator which simulates players against a
+ * {@link SessionHost}, to size the capacity of one machine.
+ * <p>
+ * Each simulated player draws an objective with
+ * {@link Objective#newObjective(int)}, then repeatedly waits for a think
+ * time and makes one legal rotation, starting a new objective whenever it
+ * solves one. Players either choose uniformly among the legal rotations
+ * ("random"), or follow a shortest solution from the {@link Solver} and
+ * make a random legal move instead with some probability, re-planning
+ * afterwards ("guided").
+ * <p>
+ * The run is a series of steps with increasing numbers of players. For each
+ * step it reports the command rate, the service time of each command, the
+ * response time measured from when the player meant to send the command
+ * (so that queueing behind a saturated host is not hidden), and the garbage
+ * collections that happened during the step.
+ * <pre>
+ *   java vikings.brainstorm.PlayerLoadGenerator players=1,10,100,1000 seconds=5
+ *        difficulty=3 strategy=guided mistakes=0.1 think=exponential:20 threads=4
+ * </pre>
+ * Think times are in milliseconds: none, fixed:T, uniform:T or exponential:T
+ * (T is the mean).
+ */
+public class PlayerLoadGenerator {
+    private final SessionHost host;
+    private final int difficulty;
+    private final boolean guided;
+    private final double mistakes;
+    private final String think;
+    private final double meanThinkNanos;
+
+    private PlayerLoadGenerator(SessionHost host, int difficulty, boolean guided, double mistakes, String think) {
+        this.host = host;
+        this.difficulty = difficulty;
+        this.guided = guided;
+        this.mistakes = mistakes;
+        int colon = think.indexOf(':');
+        this.think = colon < 0 ? think : think.substring(0, colon);
+        this.meanThinkNanos = colon < 0 ? 0 : Double.parseDouble(think.substring(colon + 1)) * 1e6;
+    }
+
+    /**
+     * The statistics of one worker thread during a step.
+     */
+    private static class WorkerStats {
+        final LatencyHistogram service = new LatencyHistogram();
+        final LatencyHistogram response = new LatencyHistogram();
+        final Solver solver = new Solver();
+    }
+
+    private final List<WorkerStats> allStats = new ArrayList<>();
+    private final ThreadLocal<WorkerStats> stats = ThreadLocal.withInitial(() -> {
+        WorkerStats s = new WorkerStats();
+        synchronized (allStats) {
+            allStats.add(s);
+        }
+        return s;
+    });
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder games = new LongAdder();
+
+    /**
+     * A simulated player, which schedules itself after each command.
+     */
+    private class Player implements Runnable {
+        final SplittableRandom random;
+        final ScheduledThreadPoolExecutor executor;
+        final AtomicBoolean running;
+        Objective objective;
+        long session;
+        String plan;
+        int planned;
+        long intended;
+
+        Player(long seed, ScheduledThreadPoolExecutor executor, AtomicBoolean running) {
+            this.random = new SplittableRandom(seed);
+            this.executor = executor;
+            this.running = running;
+            startGame();
+        }
+
+        void startGame() {
+            objective = Objective.newObjective(difficulty);
+            session = host.open(objective);
+            plan = null;
+        }
+
+        void schedule() {
+            long delay = thinkTime(random);
+            intended = System.nanoTime() + delay;
+            try {
+                executor.schedule(this, delay, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                host.close(session); // the step has ended
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!running.get()) {
+                host.close(session);
+                return;
+            }
+            WorkerStats s = stats.get();
+            int position = choose(s.solver);
+            long start = System.nanoTime();
+            int result = position < 0 ? SessionHost.ILLEGAL : host.rotate(session, position);
+            long end = System.nanoTime();
+            s.service.record(end - start);
+            s.response.record(end - intended);
+            commands.increment();
+            if (result == SessionHost.SOLVED || position < 0) {
+                if (result == SessionHost.SOLVED)
+                    games.increment();
+                host.close(session);
+                startGame();
+            }
+            schedule();
+        }
+
+        int choose(Solver solver) {
+            if (guided) {
+                if (random.nextDouble() >= mistakes) {
+                    if (plan == null) {
+                        plan = solver.solve(host.getBoardString(session), objective.getTargetPlacement());
+                        planned = 0;
+                    }
+                    if (planned < plan.length())
+                        return plan.charAt(planned++) - '0';
+                }
+                plan = null;
+            }
+            int rotatable = PackedBoard.rotatableMask(host.getState(session));
+            if (rotatable == 0)
+                return -1;
+            int pick = random.nextInt(Integer.bitCount(rotatable));
+            for (int p = 0; ; p++) {
+                if ((rotatable >> p & 1) != 0 && pick-- == 0)
+                    return p;
+            }
+        }
+    }
+
+    private long thinkTime(SplittableRandom random) {
+        switch (think) {
+            case "fixed":
+                return (long) meanThinkNanos;
+            case "uniform":
+                return (long) (random.nextDouble() * 2 * meanThinkNanos);
+            case "exponential":
+                return (long) (-Math.log(1 - random.nextDouble()) * meanThinkNanos);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Run one step of the load test.
+     */
+    private void runStep(int players, int threads, int seconds) throws InterruptedException {
+        synchronized (allStats) {
+            allStats.clear();
+        }
+        commands.reset();
+        games.reset();
+        long gcCount = 0, gcTime = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount -= gc.getCollectionCount();
+            gcTime -= gc.getCollectionTime();
+        }
+
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Random seeds = new Random(players);
+        long start = System.nanoTime();
+        for (int i = 0; i < players; i++)
+            new Player(seeds.nextLong(), executor, running).schedule();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += gc.getCollectionCount();
+            gcTime += gc.getCollectionTime();
+        }
+        LatencyHistogram service = new LatencyHistogram();
+        LatencyHistogram response = new LatencyHistogram();
+        synchronized (allStats) {
+            for (WorkerStats s : allStats) {
+                service.add(s.service);
+                response.add(s.response);
+            }
+        }
+        System.out.printf("players=%d: %.0f commands/s, %d games solved, %d GCs (%d ms)%n", players,
+                commands.sum() / (elapsed / 1e9), games.sum(), gcCount, gcTime);
+        System.out.println("  service  " + service);
+        System.out.println("  response " + response);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String players = "1,10,100,1000";
+        int seconds = 5;
+        int difficulty = 3;
+        String strategy = "random";
+        double mistakes = 0.1;
+        String think = "exponential:20";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            switch (kv[0]) {
+                case "players": players = kv[1]; break;
+                case "seconds": seconds = Integer.parseInt(kv[1]); break;
+                case "difficulty": difficulty = Integer.parseInt(kv[1]); break;
+                case "strategy": strategy = kv[1]; break;
+                case "mistakes": mistakes = Double.parseDouble(kv[1]); break;
+                case "think": think = kv[1]; break;
+                case "threads": threads = Integer.parseInt(kv[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        int maxPlayers = 0;
+        for (String n : players.split(","))
+            maxPlayers = Math.max(maxPlayers, Integer.parseInt(n));
+        PlayerLoadGenerator generator = new PlayerLoadGenerator(new SessionHost(maxPlayers * 2),
+                difficulty, strategy.equals("guided"), mistakes, think);
+        System.out.printf("strategy=%s think=%s difficulty=%d threads=%d%n", strategy, think, difficulty, threads);
+        for (String n : players.split(","))
+            generator.runStep(Integer.parseInt(n), threads, seconds);
+    }
+}
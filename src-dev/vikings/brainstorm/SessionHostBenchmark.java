@@ -0,0 +1,67 @@
+package vikings.brainstorm;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the heap used per idle session in a {@link SessionHost}, and the
+ * rate at which it processes rotation commands from many threads.
+ * <pre>
+ *   java vikings.brainstorm.SessionHostBenchmark [sessions] [threads] [seconds]
+ * </pre>
+ */
+public class SessionHostBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        long before = usedHeap();
+        SessionHost host = new SessionHost(sessions);
+        for (int i = 0; i < sessions; i++)
+            host.open(Objective.OBJECTIVES[i % Objective.OBJECTIVES.length]);
+        long after = usedHeap();
+        // the handles of the sessions, by slot; the workers replace those they close
+        AtomicLongArray handles = new AtomicLongArray(sessions);
+        for (int i = 0; i < sessions; i++)
+            handles.set(i, i);
+        double bytesPerSession = (double) (after - before) / sessions;
+        System.out.printf("%d sessions: %.1f bytes/session, %.1f million sessions/GB%n",
+                sessions, bytesPerSession, (1L << 30) / bytesPerSession / 1e6);
+
+        LongAdder commands = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    int slot = random.nextInt(sessions);
+                    long session = handles.get(slot);
+                    int result = host.rotate(session, random.nextInt(Tile.NUM_POSITIONS));
+                    if (result == SessionHost.SOLVED) {
+                        host.close(session);
+                        long reopened = host.open(Objective.OBJECTIVES[slot % Objective.OBJECTIVES.length]);
+                        if (reopened >= 0)
+                            handles.set((int) reopened, reopened);
+                    }
+                    count++;
+                }
+                commands.add(count);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        System.out.printf("%d threads: %.1f million commands/s%n", threads, commands.sum() / (seconds * 1e6));
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
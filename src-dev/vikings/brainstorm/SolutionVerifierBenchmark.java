@@ -0,0 +1,65 @@
+package vikings.brainstorm;
+
+import java.util.Random;
+
+/**
+ * Measures {@link SolutionVerifier} on a batch of submissions like those a
+ * leaderboard receives: shortest solutions of the catalogue objectives with
+ * random legal detours added, and a tenth of them cut short or given an
+ * illegal rotation.
+ * <pre>
+ *   java vikings.brainstorm.SolutionVerifierBenchmark [submissions] [rounds]
+ * </pre>
+ * The first round includes solving each objective once.
+ */
+public class SolutionVerifierBenchmark {
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 20;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Random random = new Random(1);
+        Solver solver = new Solver();
+        String[] solutions = new String[Objective.OBJECTIVES.length];
+        for (int i = 0; i < solutions.length; i++)
+            solutions[i] = solver.solve(Objective.OBJECTIVES[i]);
+
+        Objective[] objectives = new Objective[count];
+        String[] submissions = new String[count];
+        long rotations = 0;
+        for (int i = 0; i < count; i++) {
+            int number = random.nextInt(Objective.OBJECTIVES.length);
+            objectives[i] = Objective.OBJECTIVES[number];
+            StringBuilder submission = new StringBuilder();
+            long state = PackedBoard.fromBoardString(objectives[i].getInitialState());
+            // a detour of some legal rotations, each turned four times so it is undone
+            for (int detours = random.nextInt(4); detours > 0; detours--) {
+                int rotatable = PackedBoard.rotatableMask(state);
+                int p = Integer.numberOfTrailingZeros(rotatable);
+                submission.append((char) ('0' + p)).append((char) ('0' + p)).append((char) ('0' + p))
+                        .append((char) ('0' + p));
+            }
+            submission.append(solutions[number]);
+            if (random.nextInt(10) == 0 && submission.length() > 0) {
+                if (random.nextBoolean())
+                    submission.setLength(submission.length() - 1);
+                else
+                    submission.setCharAt(random.nextInt(submission.length()), '9');
+            }
+            submissions[i] = submission.toString();
+            rotations += submissions[i].length();
+        }
+
+        SolutionVerifier verifier = new SolutionVerifier();
+        for (int round = 1; round <= rounds; round++) {
+            long start = System.nanoTime();
+            SolutionVerifier.Verdict[] verdicts = verifier.verify(objectives, submissions);
+            long elapsed = System.nanoTime() - start;
+            int valid = 0;
+            for (SolutionVerifier.Verdict verdict : verdicts) {
+                if (verdict.isValid())
+                    valid++;
+            }
+            System.out.printf("round %d: %d of %d valid; %.0f submissions/s, %.1f ns per rotation%n", round,
+                    valid, count, count / (elapsed / 1e9), (double) elapsed / rotations);
+        }
+    }
+}
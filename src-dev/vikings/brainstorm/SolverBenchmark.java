@@ -0,0 +1,36 @@
+package vikings.brainstorm;
+
+/**
+ * Solves every catalogue objective and reports, for each, the solution
+ * length, the states the {@link Solver} expanded, the successors it
+ * generated and the time taken.
+ * <pre>
+ *   java vikings.brainstorm.SolverBenchmark [rounds]
+ * </pre>
+ * Later rounds show the times after the JIT has compiled the search.
+ */
+public class SolverBenchmark {
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        Solver solver = new Solver();
+        for (int round = 1; round <= rounds; round++) {
+            long totalNodes = 0, totalGenerated = 0, totalNanos = 0;
+            boolean last = round == rounds;
+            if (last)
+                System.out.println("objective length nodes generated ms");
+            for (int i = 0; i < Objective.OBJECTIVES.length; i++) {
+                long start = System.nanoTime();
+                String solution = solver.solve(Objective.OBJECTIVES[i]);
+                long nanos = System.nanoTime() - start;
+                totalNodes += solver.getNodes();
+                totalGenerated += solver.getGenerated();
+                totalNanos += nanos;
+                if (last)
+                    System.out.printf("%9d %6d %8d %9d %6.2f%n", i, solution.length(), solver.getNodes(),
+                            solver.getGenerated(), nanos / 1e6);
+            }
+            System.out.printf("round %d: %d nodes, %d generated, %.0f ms%n", round, totalNodes, totalGenerated,
+                    totalNanos / 1e6);
+        }
+    }
+}
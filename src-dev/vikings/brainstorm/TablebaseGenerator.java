@@ -0,0 +1,56 @@
+package vikings.brainstorm;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds a {@link Tablebase} for each catalogue objective, and for each
+ * objective in an optional catalogue file, and writes them to a directory.
+ * <pre>
+ *   java vikings.brainstorm.TablebaseGenerator directory [catalogue]
+ * </pre>
+ * The catalogue objectives are written to objective-NN.vtb, by index. A
+ * catalogue file has one objective per line, the initial board string and
+ * the target placement separated by white space; its objectives are written
+ * to imported-NN.vtb, by line.
+ */
+public class TablebaseGenerator {
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args[0]);
+        Files.createDirectories(directory);
+        List<String[]> objectives = new ArrayList<>();
+        for (Objective objective : Objective.OBJECTIVES)
+            objectives.add(new String[]{objective.getInitialState(), objective.getTargetPlacement()});
+        int catalogueSize = objectives.size();
+        if (args.length > 1) {
+            for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty())
+                    objectives.add(line.trim().split("\\s+"));
+            }
+        }
+
+        long totalStates = 0, totalBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < objectives.size(); i++) {
+            String[] objective = objectives.get(i);
+            String name = i < catalogueSize ? String.format("objective-%02d.vtb", i)
+                    : String.format("imported-%02d.vtb", i - catalogueSize);
+            long begin = System.nanoTime();
+            Tablebase tablebase = Tablebase.build(objective[0], objective[1]);
+            Path file = directory.resolve(name);
+            tablebase.write(file);
+            long bytes = Files.size(file);
+            totalStates += tablebase.size();
+            totalBytes += bytes;
+            System.out.printf("%s: %d states, distances up to %d, %d bytes, %.0f ms%n", name, tablebase.size(),
+                    tablebase.getMaxDistance(), bytes, (System.nanoTime() - begin) / 1e6);
+        }
+        System.out.printf("%d tablebases, %d states, %d bytes, %.1f s%n", objectives.size(), totalStates,
+                totalBytes, (System.nanoTime() - start) / 1e9);
+    }
+}
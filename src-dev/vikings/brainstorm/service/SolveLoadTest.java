@@ -0,0 +1,98 @@
+package vikings.brainstorm.service;
+
+import vikings.brainstorm.Objective;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A load test for {@link SolveService} against localhost.
+ * <p>
+ * Starts a service in this process, then runs a number of clients which
+ * each request solutions for random objectives back-to-back for a fixed
+ * time, and reports the p50/p99 latency and the request rate.
+ * <pre>
+ *   java vikings.brainstorm.service.SolveLoadTest [clients] [seconds] [difficulty]
+ * </pre>
+ */
+public class SolveLoadTest {
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int difficulty = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        int cpus = Runtime.getRuntime().availableProcessors();
+        SolveService service = new SolveService(0, cpus, clients, 4096);
+        service.start();
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(cpus);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor).build();
+        String base = "http://localhost:" + service.getPort() + "/solve";
+
+        long[][] latencies = new long[clients][1 << 16];
+        int[] counts = new int[clients];
+        AtomicInteger rejected = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            final int id = c;
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline && counts[id] < latencies[id].length) {
+                    Objective objective = Objective.newObjective(random.nextInt(difficulty + 1));
+                    URI uri = URI.create(base + "?initial=" + encode(objective.getInitialState())
+                            + "&target=" + encode(objective.getTargetPlacement()));
+                    long t0 = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(),
+                                HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() == 503)
+                            rejected.incrementAndGet();
+                    } catch (Exception e) {
+                        rejected.incrementAndGet();
+                        continue;
+                    }
+                    latencies[id][counts[id]++] = System.nanoTime() - t0;
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+        service.stop();
+        clientExecutor.shutdown();
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int n = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, n, counts[c]);
+            n += counts[c];
+        }
+        Arrays.sort(all);
+        System.out.printf("%d clients, %d requests in %.1f s (%d rejected)%n", clients, total, elapsed / 1e9, rejected.get());
+        System.out.printf("p50 %.3f ms, p99 %.3f ms, %.0f requests/s%n",
+                percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6, total / (elapsed / 1e9));
+    }
+
+    private static String encode(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
@@ -0,0 +1,371 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds a solution to one objective quickly, then keeps looking for shorter
+ * ones until it proves the best is shortest, or runs out of time.
+ * <p>
+ * The search is a sequence of weighted A* runs (restarting weighted A*):
+ * first a greedy search on the heuristic alone, then A* with the heuristic
+ * weighted by 5, 3, 2, 1.5 and finally 1. Each run ignores states that
+ * cannot lead to a solution shorter than the best so far, and if a run
+ * exhausts its states, the best solution is shortest.
+ * <p>
+ * The heuristic is the largest number of quarter-turns any target boat
+ * needs to reach its target edge if no tile were ever blocked. One rotation
+ * moves a boat at most one step, so it never overestimates, and plain A*
+ * finds shortest solutions.
+ * <p>
+ * A search stops at its deadline, when {@link #cancel()} is called from
+ * another thread, or when the solving thread is interrupted. The best
+ * solution so far can be read at any time, from any thread.
+ */
+public class AnytimeSolver {
+    /**
+     * Receives the progress of a search, on the solving thread.
+     */
+    public interface Progress {
+        /**
+         * @param bestLength the length of the best solution found so far,
+         *                   or -1 if none has been found
+         * @param lowerBound no solution is shorter than this
+         */
+        void report(int bestLength, int lowerBound);
+    }
+
+    /**
+     * The fewest quarter-turns that move a boat from one edge to another,
+     * ignoring blocking, indexed by from * NUM_EDGES + to; -1 if none do
+     */
+    static final byte[] EDGE_DISTANCES = new byte[PackedBoard.NUM_EDGES * PackedBoard.NUM_EDGES];
+
+    static {
+        Arrays.fill(EDGE_DISTANCES, (byte) -1);
+        int[] queue = new int[PackedBoard.NUM_EDGES];
+        for (int from = 0; from < PackedBoard.NUM_EDGES; from++) {
+            int base = from * PackedBoard.NUM_EDGES;
+            EDGE_DISTANCES[base + from] = 0;
+            queue[0] = from;
+            for (int head = 0, tail = 1; head < tail; head++) {
+                int e = queue[head];
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    int next = PackedBoard.ROTATED_EDGE[p * 32 + e];
+                    if (EDGE_DISTANCES[base + next] < 0) {
+                        EDGE_DISTANCES[base + next] = (byte) (EDGE_DISTANCES[base + e] + 1);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+    }
+
+    /* the weights of the successive runs, in tenths; 0 is greedy */
+    private static final int[] WEIGHTS = {0, 50, 30, 20, 15, 10};
+
+    /* how many states are expanded between checks for the deadline */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final String initialState;
+    private final String targetPlacement;
+    private final int objective;
+    private final long start;
+    private final long target;
+    private final long mask;
+    /* for each boat, the target edge, or -1 if the boat has no target */
+    private final int[] targetEdges = new int[PackedBoard.NUM_BOATS];
+
+    private volatile String best;
+    private volatile int lowerBound;
+    private volatile boolean optimal;
+    private volatile boolean cancelled;
+    private Progress progress;
+    /* the states expanded by all runs */
+    private long nodes;
+
+    /* the states of the current run, with the index of the state each was
+       reached from, the tile rotated to reach it and its distance */
+    private long[] states = new long[1 << 12];
+    private int[] parents = new int[1 << 12];
+    private byte[] moves = new byte[1 << 12];
+    private int[] distances = new int[1 << 12];
+    private final StateSet visited = new StateSet();
+    /* the open states, as a binary heap of priority << 32 | index */
+    private long[] open = new long[1 << 12];
+    private int openSize;
+
+    /**
+     * @param objective an objective for the Vikings game
+     */
+    public AnytimeSolver(Objective objective) {
+        this(objective.getInitialState(), objective.getTargetPlacement(), objective.getProblemNumber());
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     */
+    public AnytimeSolver(String initialState, String targetPlacement) {
+        this(initialState, targetPlacement, -1);
+    }
+
+    private AnytimeSolver(String initialState, String targetPlacement, int objective) {
+        this.initialState = initialState;
+        this.targetPlacement = targetPlacement;
+        this.objective = objective;
+        start = PackedBoard.fromBoardString(initialState);
+        target = PackedBoard.boatsFromPlacement(targetPlacement);
+        mask = PackedBoard.placementMask(targetPlacement);
+        targetEdges(target, mask, targetEdges);
+        lowerBound = heuristic(start);
+    }
+
+    /**
+     * @param progress receives the progress of the search, or null
+     */
+    public void setProgress(Progress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Search until a solution is proved shortest, the time runs out, the
+     * search is cancelled or the thread is interrupted. If the search is
+     * stopped early, the best solution so far is returned.
+     *
+     * @param timeout the longest time to search for
+     * @param unit    the unit of the timeout
+     * @return the best solution found, or null if none was found (the
+     * empty String if the objective is already solved)
+     */
+    public String solve(long timeout, TimeUnit unit) {
+        Events.Solve event = new Events.Solve();
+        event.begin();
+        String solution = search(System.nanoTime() + unit.toNanos(timeout));
+        if (event.shouldCommit()) {
+            event.objective = objective;
+            event.initialState = initialState;
+            event.targetPlacement = targetPlacement;
+            event.algorithm = optimal ? "anytime A* (optimal)" : "anytime A* (stopped)";
+            event.nodes = nodes;
+            event.length = solution == null ? -1 : solution.length();
+            event.commit();
+        }
+        return solution;
+    }
+
+    private String search(long deadline) {
+        if (PackedBoard.isSolved(start, target, mask)) {
+            improve("");
+            optimal = true;
+            return best;
+        }
+        if (Reachability.isHopeless(start, target, mask)) {
+            optimal = true;
+            return null;
+        }
+        for (int weight : WEIGHTS) {
+            if (!run(weight, deadline))
+                return best;
+            if (optimal)
+                break;
+        }
+        return best;
+    }
+
+    /**
+     * Stop the search as soon as possible. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the best solution found so far, or null if none has been found
+     */
+    public String getBest() {
+        return best;
+    }
+
+    /**
+     * @return the length below which no solution exists
+     */
+    public int getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * @return true if the search has proved that the best solution is
+     * shortest, or that there is no solution
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * One weighted A* run, ignoring states that cannot improve on the best.
+     *
+     * @return false if the run was stopped early
+     */
+    private boolean run(int weight, long deadline) {
+        visited.clear();
+        openSize = 0;
+        states[0] = start;
+        distances[0] = 0;
+        visited.add(start, 0);
+        push(priority(weight, 0, heuristic(start)), 0);
+        int tail = 1;
+        int expanded = 0;
+        while (openSize > 0) {
+            if (++expanded % CHECK_INTERVAL == 0
+                    && (cancelled || Thread.currentThread().isInterrupted() || System.nanoTime() - deadline > 0))
+                return false;
+            long entry = pop();
+            nodes++;
+            int head = (int) entry;
+            long state = states[head];
+            int g = distances[head];
+            int h = heuristic(state);
+            int bestLength = best == null ? Integer.MAX_VALUE : best.length();
+            if (g + h >= bestLength || priority(weight, g, h) != entry >>> 32)
+                continue; // cannot improve on the best, or a stale entry
+            if (weight == 10 && g + h > lowerBound) {
+                // plain A* pops states in order of g + h
+                lowerBound = g + h;
+                report();
+            }
+            int rotatable = PackedBoard.rotatableMask(state);
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = PackedBoard.rotate(state, p);
+                int i = visited.get(next);
+                if (i == StateSet.NOT_FOUND) {
+                    if (tail == states.length)
+                        grow();
+                    i = tail++;
+                    visited.add(next, i);
+                    states[i] = next;
+                } else if (distances[i] <= g + 1) {
+                    continue;
+                }
+                distances[i] = g + 1;
+                parents[i] = head;
+                moves[i] = (byte) p;
+                if (PackedBoard.isSolved(next, target, mask)) {
+                    if (g + 1 < bestLength) {
+                        improve(path(i));
+                        bestLength = g + 1;
+                    }
+                    continue;
+                }
+                int nextH = heuristic(next);
+                if (g + 1 + nextH < bestLength)
+                    push(priority(weight, g + 1, nextH), i);
+            }
+        }
+        // every state that could lead to a shorter solution has been searched
+        optimal = true;
+        lowerBound = best == null ? lowerBound : best.length();
+        report();
+        return true;
+    }
+
+    private static long priority(int weight, int g, int h) {
+        return weight == 0 ? (long) h << 16 | g : 10L * g + (long) weight * h;
+    }
+
+    /**
+     * @return a lower bound on the rotations needed to solve the state
+     */
+    private int heuristic(long state) {
+        return heuristic(state, targetEdges);
+    }
+
+    /**
+     * @param target      a boat word, as from {@link PackedBoard#boatsFromPlacement(String)}
+     * @param mask        the mask for the target
+     * @param targetEdges receives, for each boat, its target edge, or -1 if it has none
+     */
+    static void targetEdges(long target, long mask, int[] targetEdges) {
+        for (int c = 0; c < PackedBoard.NUM_BOATS; c++)
+            targetEdges[c] = (mask >>> (PackedBoard.BOAT_BITS * c) & 31) == 0 ? -1
+                    : (int) (target >>> (PackedBoard.BOAT_BITS * c)) & 31;
+    }
+
+    /**
+     * @param state       a packed board state
+     * @param targetEdges for each boat, its target edge, or -1 if it has none
+     * @return a lower bound on the rotations needed to move every boat to its target edge
+     */
+    static int heuristic(long state, int[] targetEdges) {
+        int h = 0;
+        for (int c = 0; c < PackedBoard.NUM_BOATS; c++) {
+            if (targetEdges[c] < 0)
+                continue;
+            int edge = PackedBoard.boatEdge(state, c);
+            if (edge != PackedBoard.NO_BOAT)
+                h = Math.max(h, EDGE_DISTANCES[edge * PackedBoard.NUM_EDGES + targetEdges[c]]);
+        }
+        return h;
+    }
+
+    private void improve(String solution) {
+        best = solution;
+        report();
+    }
+
+    private void report() {
+        if (progress != null)
+            progress.report(best == null ? -1 : best.length(), lowerBound);
+    }
+
+    private String path(int index) {
+        char[] path = new char[distances[index]];
+        for (int i = index, k = path.length - 1; i != 0; i = parents[i], k--)
+            path[k] = (char) ('0' + moves[i]);
+        return new String(path);
+    }
+
+    private void push(long priority, int index) {
+        if (openSize == open.length)
+            open = Arrays.copyOf(open, openSize * 2);
+        long entry = priority << 32 | index;
+        int k = openSize++;
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (open[parent] <= entry)
+                break;
+            open[k] = open[parent];
+            k = parent;
+        }
+        open[k] = entry;
+    }
+
+    private long pop() {
+        long top = open[0];
+        long last = open[--openSize];
+        int k = 0;
+        while (true) {
+            int child = 2 * k + 1;
+            if (child >= openSize)
+                break;
+            if (child + 1 < openSize && open[child + 1] < open[child])
+                child++;
+            if (open[child] >= last)
+                break;
+            open[k] = open[child];
+            k = child;
+        }
+        open[k] = last;
+        return top;
+    }
+
+    private void grow() {
+        int capacity = states.length * 2;
+        states = Arrays.copyOf(states, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+    }
+}
@@ -0,0 +1,144 @@
+package vikings.brainstorm;
+
+/**
+ * Evaluates the tile geometry of many packed boards at once: whether any
+ * two tiles overlap, and which tiles can be rotated.
+ * <p>
+ * The boards are processed 64 at a time in bit-sliced form. Their states
+ * are transposed so that each long holds one bit of the state (say, the
+ * low orientation bit of tile 4) for all 64 boards, and the gaps, overlaps
+ * and blocking are then computed with bitwise operations on these words,
+ * each operation acting on 64 boards. The transposes cost a few hundred
+ * operations per 64 boards, and the rest is about as much work for 64
+ * boards as {@link PackedBoard#rotatableMask(long)} is for one.
+ * <p>
+ * {@link #isOverlapFree(long)} is the same overlap test for a single
+ * board, and is the reference the batch results are checked against.
+ */
+public class BoardBatch {
+    /**
+     * The number of boards evaluated together
+     */
+    public static final int LANES = 64;
+
+    /* the pairs of adjacent positions, left or top first, with the side of
+       the first which faces the second */
+    private static final int[] PAIR_FIRST = {0, 1, 3, 4, 6, 7, 0, 1, 2, 3, 4, 5};
+    private static final int[] PAIR_SIDE = {1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 2, 2};
+
+    private BoardBatch() {
+    }
+
+    /**
+     * @param state a packed board state
+     * @return true if no two adjacent tiles are both solid (without a gap)
+     * at the edge between them
+     */
+    public static boolean isOverlapFree(long state) {
+        for (int i = 0; i < PAIR_FIRST.length; i++) {
+            int p = PAIR_FIRST[i];
+            int s = PAIR_SIDE[i];
+            int q = PackedBoard.NEIGHBOURS[p][s];
+            if ((PackedBoard.gaps(state, p) >> s & 1) == 0 && (PackedBoard.gaps(state, q) >> ((s + 2) & 3) & 1) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Evaluate a batch of boards.
+     *
+     * @param states     packed board states
+     * @param count      the number of states to evaluate, from index 0
+     * @param overlapFree receives bit i % 64 of word i / 64 set if board i
+     *                   has no overlapping tiles; at least (count + 63) / 64 words
+     * @param rotatable  receives the rotatable mask of each board, as from
+     *                   {@link PackedBoard#rotatableMask(long)}; may be null
+     *                   if not needed
+     */
+    public static void evaluate(long[] states, int count, long[] overlapFree, int[] rotatable) {
+        long[] planes = new long[LANES];
+        long[] solid = new long[Tile.NUM_POSITIONS * 4];
+        for (int from = 0; from < count; from += LANES) {
+            int lanes = Math.min(LANES, count - from);
+            System.arraycopy(states, from, planes, 0, lanes);
+            for (int i = lanes; i < LANES; i++)
+                planes[i] = 0;
+            transpose(planes);
+            solidSides(planes, solid);
+
+            long overlap = 0;
+            for (int i = 0; i < PAIR_FIRST.length; i++) {
+                int p = PAIR_FIRST[i];
+                int s = PAIR_SIDE[i];
+                int q = PackedBoard.NEIGHBOURS[p][s];
+                overlap |= solid[p * 4 + s] & solid[q * 4 + ((s + 2) & 3)];
+            }
+            overlapFree[from / LANES] = ~overlap & (lanes == LANES ? -1L : (1L << lanes) - 1);
+
+            if (rotatable == null)
+                continue;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                long blocked = 0;
+                for (int s = 0; s < 4; s++) {
+                    int q = PackedBoard.NEIGHBOURS[p][s];
+                    if (q >= 0)
+                        blocked |= solid[q * 4 + ((s + 2) & 3)];
+                }
+                planes[p] = ~blocked;
+            }
+            for (int i = Tile.NUM_POSITIONS; i < LANES; i++)
+                planes[i] = 0;
+            transpose(planes);
+            for (int i = 0; i < lanes; i++)
+                rotatable[from + i] = (int) planes[i] & PackedBoard.boatTiles(states[from + i]);
+        }
+    }
+
+    /**
+     * From the bit planes of 64 boards, compute for each position p and
+     * side s a word of the boards whose tile at p is solid on side s.
+     */
+    private static void solidSides(long[] planes, long[] solid) {
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            long low = planes[2 * p];
+            long high = planes[2 * p + 1];
+            long o = planes[PackedBoard.TYPE_SHIFT + p];
+            // the boards with each orientation at p
+            long r0 = ~high & ~low, r1 = ~high & low, r2 = high & ~low, r3 = high & low;
+            for (int s = 0; s < 4; s++) {
+                long gapN = select(s, 0, r0, r1, r2, r3);
+                long gapO = select(s, 4, r0, r1, r2, r3);
+                solid[p * 4 + s] = ~(o & gapO | ~o & gapN);
+            }
+        }
+    }
+
+    /**
+     * @return the union of the words for the orientations whose gaps, from
+     * {@link PackedBoard#GAPS} starting at index base, include side s
+     */
+    private static long select(int s, int base, long r0, long r1, long r2, long r3) {
+        int[] gaps = PackedBoard.GAPS;
+        return (gaps[base] >> s & 1) * r0 | (gaps[base + 1] >> s & 1) * r1
+                | (gaps[base + 2] >> s & 1) * r2 | (gaps[base + 3] >> s & 1) * r3;
+    }
+
+    /**
+     * Transpose a 64 x 64 bit matrix in place, so that bit j of word i
+     * becomes bit i of word j. Each round swaps the off-diagonal blocks of
+     * half the size of the last.
+     */
+    static void transpose(long[] a) {
+        long m = 0x00000000FFFFFFFFL;
+        for (int j = 32; j != 0; j >>= 1, m ^= m << j) {
+            for (int block = 0; block < LANES; block += 2 * j) {
+                for (int k = block; k < block + j; k++) {
+                    long t = ((a[k] >>> j) ^ a[k + j]) & m;
+                    a[k] ^= t << j;
+                    a[k + j] ^= t;
+                }
+            }
+        }
+    }
+}
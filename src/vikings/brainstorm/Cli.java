@@ -0,0 +1,91 @@
+package vikings.brainstorm;
+
+import java.io.PrintStream;
+
+/**
+ * A command-line entry point for batch jobs, which start a JVM for each
+ * short solve and so are dominated by startup time. It loads only the
+ * classes of the packed board engine (no JavaFX, no service), and builds
+ * no tables larger than a few hundred bytes.
+ * <pre>
+ *   java vikings.brainstorm.Cli solve objective-number
+ *   java vikings.brainstorm.Cli solve board-string target-placement
+ *   java vikings.brainstorm.Cli validate board-string
+ * </pre>
+ * solve prints a shortest rotation string, which is an empty line if the
+ * board is already solved; validate prints true or false. The exit status
+ * is 0 on success, 1 if the board string is not valid, 2 for a usage error
+ * (including a malformed target placement) and 3 if there is no solution,
+ * in which case nothing is printed.
+ * <p>
+ * Startup can be cut further with a class-data sharing archive; see
+ * src-dev/cli-archive.sh.
+ */
+public class Cli {
+    private static final String USAGE = "usage: Cli solve objective-number | Cli solve board-string target-placement"
+            + " | Cli validate board-string";
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * @param args the command line arguments
+     * @param out  receives the result
+     * @param err  receives error and usage messages
+     * @return the exit status
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        if (args.length == 2 && args[0].equals("validate")) {
+            boolean valid = Vikings.isBoardStringValid(args[1]);
+            out.println(valid);
+            return valid ? 0 : 1;
+        }
+        if (args.length == 2 && args[0].equals("solve")) {
+            int number;
+            try {
+                number = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                number = -1;
+            }
+            if (number < 0 || number >= Objective.OBJECTIVES.length) {
+                err.println("No objective " + args[1]);
+                return 2;
+            }
+            Objective objective = Objective.OBJECTIVES[number];
+            return solve(objective.getInitialState(), objective.getTargetPlacement(), out, err);
+        }
+        if (args.length == 3 && args[0].equals("solve")) {
+            if (!Vikings.isBoardStringValid(args[1])) {
+                err.println("Invalid board string " + args[1]);
+                return 1;
+            }
+            if (!PackedBoard.isPlacementWellFormed(args[2])) {
+                err.println("Invalid target placement " + args[2]);
+                return 2;
+            }
+            return solve(args[1], args[2], out, err);
+        }
+        err.println(USAGE);
+        return 2;
+    }
+
+    /**
+     * Print a shortest solution, which is empty if the board is already
+     * solved, or report that there is none.
+     *
+     * @return the exit status
+     */
+    private static int solve(String boardString, String targetPlacement, PrintStream out, PrintStream err) {
+        String solution = new Solver().solve(boardString, targetPlacement);
+        // the solver returns the empty string both for no solution and for a
+        // board that is already solved
+        if (solution.isEmpty() && !PackedBoard.isSolved(PackedBoard.fromBoardString(boardString),
+                PackedBoard.boatsFromPlacement(targetPlacement), PackedBoard.placementMask(targetPlacement))) {
+            err.println("No solution");
+            return 3;
+        }
+        out.println(solution);
+        return 0;
+    }
+}
@@ -0,0 +1,129 @@
+package vikings.brainstorm;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events for solving and playing, so that latency in a
+ * recording can be traced to particular objectives and moves.
+ * <p>
+ * Every event is disabled by default. A disabled event is never committed,
+ * and once the JIT has compiled the code that creates it, the event object
+ * is not even allocated, so the events cost nothing unless they are
+ * enabled, for example with
+ * <pre>
+ *   java -XX:StartFlightRecording:settings=src-dev/vikings.jfc,filename=vikings.jfr ...
+ * </pre>
+ * which enables every event here, or from JDK Mission Control.
+ */
+public final class Events {
+    private Events() {
+    }
+
+    /**
+     * One search for a solution, from start to end.
+     */
+    @Name("vikings.Solve")
+    @Label("Solve")
+    @Category({"Vikings", "Solver"})
+    @Description("A search for a solution to an objective")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Solve extends Event {
+        @Label("Objective")
+        @Description("The problem number of the objective, or -1 if the search was given a board string")
+        public int objective = -1;
+
+        @Label("Initial State")
+        public String initialState;
+
+        @Label("Target Placement")
+        public String targetPlacement;
+
+        @Label("Algorithm")
+        public String algorithm;
+
+        @Label("Nodes")
+        @Description("The number of states expanded")
+        public long nodes;
+
+        @Label("Solution Length")
+        @Description("The length of the solution found, or -1 if there is none")
+        public int length;
+    }
+
+    /**
+     * One layer (depth) of a search completed.
+     */
+    @Name("vikings.Layer")
+    @Label("Search Layer")
+    @Category({"Vikings", "Solver"})
+    @Description("A breadth-first layer, or an iterative-deepening iteration, of a search")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Layer extends Event {
+        @Label("Algorithm")
+        public String algorithm;
+
+        @Label("Depth")
+        @Description("The number of rotations from the start, or the limit of an iteration")
+        public int depth;
+
+        @Label("States")
+        @Description("The number of states in the layer, or expanded by the iteration")
+        public long states;
+    }
+
+    /**
+     * One lookup in a cache of results.
+     */
+    @Name("vikings.CacheLookup")
+    @Label("Cache Lookup")
+    @Category({"Vikings", "Solver"})
+    @Enabled(false)
+    @StackTrace(false)
+    public static class CacheLookup extends Event {
+        @Label("Cache")
+        public String cache;
+
+        @Label("Hit")
+        public boolean hit;
+    }
+
+    /**
+     * One rotation of a tile requested in the game.
+     */
+    @Name("vikings.Rotation")
+    @Label("Tile Rotation")
+    @Category({"Vikings", "Game"})
+    @Description("Handling of a rotation of a tile in the game, including validation of the board")
+    @Enabled(false)
+    @StackTrace(false)
+    public static class Rotation extends Event {
+        @Label("Position")
+        public int position;
+
+        @Label("Turns")
+        public int turns;
+
+        @Label("Rotated")
+        @Description("False if the tile could not rotate")
+        public boolean rotated;
+
+        @Label("Board String")
+        @Description("The board after the rotation")
+        public String boardString;
+
+        @Label("Validation Time")
+        @Description("The time taken to check the board string and completion after the last rotation of"
+                + " a batch of clicks; 0 for the other rotations of the batch")
+        @Timespan(Timespan.NANOSECONDS)
+        public long validationTime;
+    }
+}
@@ -0,0 +1,159 @@
+package vikings.brainstorm;
+
+/**
+ * Finds shortest solutions by iterative-deepening A* (IDA*): depth-first
+ * searches with an increasing limit on the distance travelled plus the
+ * heuristic of {@link AnytimeSolver}. It needs memory only for the current
+ * path and its {@link TranspositionTable}, in which it records
+ * <ul>
+ * <li>the shortest distance at which each state has been reached, so that
+ * a state reached again by a longer path is not searched again, and</li>
+ * <li>a bound on the rotations needed from each state that has been
+ * searched, so that later searches can stop there sooner.</li>
+ * </ul>
+ * Several solvers on different threads may share one table, as long as
+ * they solve the same objective, and then benefit from each other's bounds.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class IdaSolver {
+    private static final int FOUND = -1;
+
+    private final TranspositionTable table;
+    private final int[] targetEdges = new int[PackedBoard.NUM_BOATS];
+    private long target;
+    private long mask;
+    private final char[] path = new char[256];
+    private int foundLength;
+    /* set by each search: a lower bound on the rotations needed from its state */
+    private int bound;
+    private long nodes;
+
+    /**
+     * @param table the table to record what the search learns in
+     */
+    public IdaSolver(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @param objective an objective for the Vikings game
+     * @return a shortest sequence of rotations that solves it, or an empty
+     * String if no solution exists
+     */
+    public String solve(Objective objective) {
+        return solve(objective.getInitialState(), objective.getTargetPlacement(), objective.getProblemNumber());
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @return a shortest sequence of rotations that moves every boat in the
+     * target placement to its target edge, or an empty String if no solution exists
+     */
+    public String solve(String initialState, String targetPlacement) {
+        return solve(initialState, targetPlacement, -1);
+    }
+
+    private String solve(String initialState, String targetPlacement, int objective) {
+        Events.Solve event = new Events.Solve();
+        event.begin();
+        String solution = search(initialState, targetPlacement);
+        if (event.shouldCommit()) {
+            event.objective = objective;
+            event.initialState = initialState;
+            event.targetPlacement = targetPlacement;
+            event.algorithm = "IDA*";
+            event.nodes = nodes;
+            event.length = solution == null ? -1 : solution.length();
+            event.commit();
+        }
+        return solution == null ? "" : solution;
+    }
+
+    /**
+     * @return the solution, or null if there is none
+     */
+    private String search(String initialState, String targetPlacement) {
+        long start = PackedBoard.fromBoardString(initialState);
+        target = PackedBoard.boatsFromPlacement(targetPlacement);
+        mask = PackedBoard.placementMask(targetPlacement);
+        AnytimeSolver.targetEdges(target, mask, targetEdges);
+        nodes = 0;
+        if (PackedBoard.isSolved(start, target, mask))
+            return "";
+        if (Reachability.isHopeless(start, target, mask))
+            return null;
+        int limit = AnytimeSolver.heuristic(start, targetEdges);
+        while (limit < path.length) {
+            Events.Layer iteration = new Events.Layer();
+            iteration.begin();
+            long before = nodes;
+            int next = search(start, 0, limit);
+            if (iteration.shouldCommit()) {
+                iteration.algorithm = "IDA*";
+                iteration.depth = limit;
+                iteration.states = nodes - before;
+                iteration.commit();
+            }
+            if (next == FOUND)
+                return new String(path, 0, foundLength);
+            if (next == Integer.MAX_VALUE)
+                return null; // every reachable state has been searched
+            limit = next;
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of states expanded by the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Search below a state for a solution of at most limit rotations, and
+     * set {@link #bound} for the state.
+     *
+     * @return FOUND, or the smallest total (g plus bound) found over the limit,
+     * or Integer.MAX_VALUE if nothing can be reached
+     */
+    private int search(long state, int g, int limit) {
+        int h = AnytimeSolver.heuristic(state, targetEdges);
+        long entry = table.probe(state);
+        if (entry != TranspositionTable.MISS) {
+            h = Math.max(h, TranspositionTable.bound(entry));
+            if (TranspositionTable.g(entry) < g) {
+                bound = h;
+                return Integer.MAX_VALUE; // a shorter path reaches this state
+            }
+        }
+        bound = h;
+        if (g + h > limit)
+            return g + h;
+        if (PackedBoard.isSolved(state, target, mask)) {
+            foundLength = g;
+            return FOUND;
+        }
+        table.store(state, g, h);
+        nodes++;
+        int min = Integer.MAX_VALUE;
+        int childBound = Integer.MAX_VALUE;
+        int rotatable = PackedBoard.rotatableMask(state);
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            if ((rotatable >> p & 1) == 0)
+                continue;
+            path[g] = (char) ('0' + p);
+            int t = search(PackedBoard.rotate(state, p), g + 1, limit);
+            if (t == FOUND)
+                return FOUND;
+            min = Math.min(min, t);
+            childBound = Math.min(childBound, bound);
+        }
+        // no solution within the limit: every solution goes through a child
+        bound = childBound == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(h, childBound + 1);
+        table.store(state, g, bound);
+        return min;
+    }
+}
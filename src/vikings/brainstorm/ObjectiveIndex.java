@@ -0,0 +1,252 @@
+package vikings.brainstorm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An in-memory index over a catalogue of objectives, for finding the
+ * objectives with given features: the number and colours of the boats,
+ * their target edges, the length of a shortest solution, the layout of
+ * tile types and the tier (difficulty).
+ * <p>
+ * Each objective added gets the next id, starting at 0. For each value of
+ * each feature the index keeps a bitset of the ids that have it (an
+ * inverted index), so a query is a few bitwise operations over the
+ * catalogue: around 50 microseconds per million objectives.
+ * <pre>
+ *   index.query().boats(3).length(20, 25).target(Colour.RED, 'v').find()
+ * </pre>
+ * Adding is not thread-safe, but once built an index can be queried from
+ * many threads.
+ */
+public class ObjectiveIndex {
+    /**
+     * The number of tiers, as used by {@link Objective#newObjective(int)}
+     */
+    public static final int NUM_TIERS = 4;
+
+    /**
+     * Optimal lengths of this or more are indexed together
+     */
+    public static final int MAX_LENGTH = 128;
+
+    private final List<Objective> objectives = new ArrayList<>();
+    private final BitSet[] byBoatCount = newBitSets(PackedBoard.NUM_BOATS + 1);
+    private final BitSet[] byColour = newBitSets(PackedBoard.NUM_BOATS);
+    private final BitSet[] byTargetEdge = newBitSets(PackedBoard.NUM_BOATS * PackedBoard.NUM_EDGES);
+    /* the ids with an optimal length of at most each length, so that a
+       range of lengths is two operations */
+    private final BitSet[] byMaxLength = newBitSets(MAX_LENGTH);
+    private final BitSet[] byLayout = newBitSets(1 << Tile.NUM_POSITIONS);
+    private final BitSet[] byTier = newBitSets(NUM_TIERS);
+
+    private static BitSet[] newBitSets(int n) {
+        BitSet[] sets = new BitSet[n];
+        for (int i = 0; i < n; i++)
+            sets[i] = new BitSet();
+        return sets;
+    }
+
+    /**
+     * Build an index of the pre-defined objectives, solving each to find
+     * its optimal length. This takes around a second.
+     *
+     * @return an index whose ids are the objectives' indexes in the catalogue
+     */
+    public static ObjectiveIndex ofCatalogue() {
+        ObjectiveIndex index = new ObjectiveIndex();
+        Solver solver = new Solver();
+        for (int i = 0; i < Objective.OBJECTIVES.length; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            index.add(objective, i / 15, solver.solve(objective).length());
+        }
+        return index;
+    }
+
+    /**
+     * Add an objective to the index.
+     *
+     * @param objective     the objective
+     * @param tier          its tier, 0-3
+     * @param optimalLength the length of its shortest solutions, or -1 if not known
+     * @return the id of the objective
+     */
+    public int add(Objective objective, int tier, int optimalLength) {
+        if (tier < 0 || tier >= NUM_TIERS)
+            throw new IllegalArgumentException("Bad tier " + tier);
+        int id = objectives.size();
+        objectives.add(objective);
+        String placement = objective.getTargetPlacement();
+        byBoatCount[Math.min(placement.length() / 2, PackedBoard.NUM_BOATS)].set(id);
+        for (int i = 0; i + 1 < placement.length(); i += 2) {
+            int c = PackedBoard.BOAT_COLOURS.indexOf(placement.charAt(i));
+            byColour[c].set(id);
+            byTargetEdge[c * PackedBoard.NUM_EDGES + placement.charAt(i + 1) - 'a'].set(id);
+        }
+        if (optimalLength >= 0) {
+            for (int l = Math.min(optimalLength, MAX_LENGTH - 1); l < MAX_LENGTH; l++)
+                byMaxLength[l].set(id);
+        }
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        byLayout[(int) (state >>> PackedBoard.TYPE_SHIFT) & ((1 << Tile.NUM_POSITIONS) - 1)].set(id);
+        byTier[tier].set(id);
+        return id;
+    }
+
+    /**
+     * @param id the id of an objective in the index
+     * @return the objective
+     */
+    public Objective get(int id) {
+        return objectives.get(id);
+    }
+
+    /**
+     * @return the number of objectives in the index
+     */
+    public int size() {
+        return objectives.size();
+    }
+
+    /**
+     * @return a new query, which matches every objective until it is narrowed
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * A conjunction of conditions on the features of objectives. Each
+     * condition narrows the set of matching ids immediately, so the most
+     * selective conditions are best given first.
+     */
+    public class Query {
+        /* the matching ids, or null before the first condition (all match) */
+        private BitSet ids;
+
+        private Query() {
+        }
+
+        private void narrow(BitSet matching) {
+            if (ids == null)
+                ids = (BitSet) matching.clone();
+            else
+                ids.and(matching);
+        }
+
+        private BitSet matching() {
+            if (ids == null) {
+                ids = new BitSet();
+                ids.set(0, objectives.size());
+            }
+            return ids;
+        }
+
+        /**
+         * @param count the number of boats with a target, 1-4
+         */
+        public Query boats(int count) {
+            narrow(count < 1 || count > PackedBoard.NUM_BOATS ? new BitSet() : byBoatCount[count]);
+            return this;
+        }
+
+        /**
+         * @param colours colours which must all have a target
+         */
+        public Query colours(Colour... colours) {
+            for (Colour colour : colours)
+                narrow(byColour[colourIndex(colour)]);
+            return this;
+        }
+
+        /**
+         * @param colour a colour which must not have a target
+         */
+        public Query without(Colour colour) {
+            matching().andNot(byColour[colourIndex(colour)]);
+            return this;
+        }
+
+        /**
+         * @param colour the colour of a boat
+         * @param edge   the edge, 'a'-'x', that the boat must target
+         */
+        public Query target(Colour colour, char edge) {
+            if (edge < 'a' || edge >= 'a' + PackedBoard.NUM_EDGES)
+                throw new IllegalArgumentException("Bad edge " + edge);
+            narrow(byTargetEdge[colourIndex(colour) * PackedBoard.NUM_EDGES + edge - 'a']);
+            return this;
+        }
+
+        /**
+         * Match objectives whose shortest solutions are within a range of
+         * lengths. Objectives added without a length never match.
+         *
+         * @param min the shortest length, inclusive
+         * @param max the longest length, inclusive
+         */
+        public Query length(int min, int max) {
+            if (max < Math.max(min, 0)) {
+                narrow(new BitSet());
+                return this;
+            }
+            narrow(byMaxLength[Math.min(max, MAX_LENGTH - 1)]);
+            if (min > 0)
+                ids.andNot(byMaxLength[Math.min(min, MAX_LENGTH) - 1]);
+            return this;
+        }
+
+        /**
+         * @param layout the tile types at positions 0-8, as a String of nine 'N's and 'O's
+         */
+        public Query layout(String layout) {
+            if (layout.length() != Tile.NUM_POSITIONS)
+                throw new IllegalArgumentException("Bad layout " + layout);
+            int mask = 0;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if (layout.charAt(p) == 'O')
+                    mask |= 1 << p;
+            }
+            narrow(byLayout[mask]);
+            return this;
+        }
+
+        /**
+         * @param tier the tier, 0-3
+         */
+        public Query tier(int tier) {
+            narrow(tier < 0 || tier >= NUM_TIERS ? new BitSet() : byTier[tier]);
+            return this;
+        }
+
+        /**
+         * @return the number of matching objectives
+         */
+        public int count() {
+            return matching().cardinality();
+        }
+
+        /**
+         * @return the ids of the matching objectives; a copy the caller may change
+         */
+        public BitSet ids() {
+            return (BitSet) matching().clone();
+        }
+
+        /**
+         * @return the matching objectives, in order of id
+         */
+        public List<Objective> find() {
+            BitSet ids = matching();
+            List<Objective> found = new ArrayList<>(ids.cardinality());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+                found.add(objectives.get(id));
+            return found;
+        }
+    }
+
+    private static int colourIndex(Colour colour) {
+        return PackedBoard.BOAT_COLOURS.indexOf(colour.toChar());
+    }
+}
@@ -0,0 +1,550 @@
+package vikings.brainstorm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A compact representation of a board state as a single long, together with
+ * the geometry needed to rotate tiles without creating any objects.
+ * <p>
+ * The state is packed as follows:
+ * <pre>
+ *  bits  0-17  orientation of the tile at position p in bits 2p, 2p+1
+ *  bits 18-26  tile types, bit 18+p set if the tile at position p is an 'O'
+ *  bits 32-51  boat edges, 5 bits per boat in order B, G, R, Y
+ *              (0-23 for edges 'a'-'x', NO_BOAT if the boat is absent)
+ * </pre>
+ * The sides of a tile are numbered clockwise from the top, matching the
+ * order of {@link Location#getEdgeLocationsForTilePosition(int)}: 0 = top,
+ * 1 = right, 2 = bottom, 3 = left. A quarter-turn clockwise moves a boat
+ * from side s to side s+1 of the rotated tile.
+ */
+public final class PackedBoard {
+    /**
+     * The boat colours in the order they appear in a board string
+     */
+    public static final String BOAT_COLOURS = "BGRY";
+
+    public static final int NUM_BOATS = 4;
+    public static final int NUM_EDGES = 24;
+
+    /**
+     * The 5-bit edge value used for a boat which is not on the board
+     */
+    public static final int NO_BOAT = 31;
+
+    static final int TYPE_SHIFT = 18;
+    static final int BOAT_SHIFT = 32;
+    static final int BOAT_BITS = 5;
+    static final long ORIENTATION_MASK = (1L << TYPE_SHIFT) - 1;
+    static final long TYPE_MASK = 0x1FFL << TYPE_SHIFT;
+    static final long BOATS_MASK = (1L << (BOAT_BITS * NUM_BOATS)) - 1;
+
+    /**
+     * The edges around each tile position, in side order top, right, bottom, left
+     */
+    static final int[][] EDGES = new int[Tile.NUM_POSITIONS][4];
+
+    /**
+     * The neighbouring tile position on each side, or -1 at the border of the board
+     */
+    static final int[][] NEIGHBOURS = new int[Tile.NUM_POSITIONS][4];
+
+    /**
+     * For each edge, a mask with bit p set for each tile position p that has the edge
+     */
+    static final int[] EDGE_TILES = new int[NUM_EDGES];
+
+    /**
+     * For each tile position, a mask with bit e set for each edge e around it
+     */
+    static final int[] TILE_EDGES = new int[Tile.NUM_POSITIONS];
+
+    /**
+     * The edge a boat moves to when the tile at position p is rotated, indexed
+     * by p * 32 + edge. Edges which are not around the tile are unchanged.
+     */
+    static final byte[] ROTATED_EDGE = new byte[Tile.NUM_POSITIONS * 32];
+
+    /**
+     * The sides of a tile which have a gap (lens removed), as a 4-bit mask
+     * indexed by type (0 = N, 1 = O) * 4 + orientation.
+     */
+    static final int[] GAPS = {
+            0b0110, 0b1100, 0b1001, 0b0011, // N: right+bottom, rotated clockwise
+            0b1010, 0b0101, 0b1010, 0b0101  // O: right+left, rotated clockwise
+    };
+
+    /**
+     * The most blocking tables built, 512 KB each; the catalogue uses 16
+     * type layouts
+     */
+    static final int MAX_BLOCKED_TABLES = 32;
+
+    /**
+     * The masks computed for a layout before its table is built. Building
+     * one costs about as much as computing 2^18 masks, so short runs, such
+     * as a single solve from the command line, never build one.
+     */
+    static final int BLOCKED_TABLE_THRESHOLD = 1 << 16;
+
+    /* for each type layout, once built, the blocked mask of every
+       orientation vector (see blockedMask) */
+    private static final AtomicReferenceArray<char[]> BLOCKED_TABLES =
+            new AtomicReferenceArray<>(1 << Tile.NUM_POSITIONS);
+    private static final AtomicInteger blockedTableCount = new AtomicInteger();
+    /* masks computed per layout without a table, up to the threshold; racy
+       counts are close enough */
+    private static final int[] blockedCounts = new int[1 << Tile.NUM_POSITIONS];
+
+    static {
+        String[] tileEdges = {"aehd", "bfie", "cgjf", "hlok", "impl", "jnqm", "osvr", "ptws", "quxt"};
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            for (int s = 0; s < 4; s++) {
+                EDGES[p][s] = tileEdges[p].charAt(s) - 'a';
+                EDGE_TILES[EDGES[p][s]] |= 1 << p;
+                TILE_EDGES[p] |= 1 << EDGES[p][s];
+            }
+            int row = p / 3;
+            int col = p % 3;
+            NEIGHBOURS[p][0] = row > 0 ? p - 3 : -1;
+            NEIGHBOURS[p][1] = col < 2 ? p + 1 : -1;
+            NEIGHBOURS[p][2] = row < 2 ? p + 3 : -1;
+            NEIGHBOURS[p][3] = col > 0 ? p - 1 : -1;
+            for (int e = 0; e < 32; e++) {
+                ROTATED_EDGE[p * 32 + e] = (byte) e;
+            }
+            for (int s = 0; s < 4; s++) {
+                ROTATED_EDGE[p * 32 + EDGES[p][s]] = (byte) EDGES[p][(s + 1) & 3];
+            }
+        }
+    }
+
+    private PackedBoard() {
+    }
+
+    /**
+     * @param boardString a well-formed board string
+     * @return the packed state of the board
+     */
+    public static long fromBoardString(String boardString) {
+        long state = 0;
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            if (boardString.charAt(2 * p) == 'O')
+                state |= 1L << (TYPE_SHIFT + p);
+            state |= (long) (boardString.charAt(2 * p + 1) - '0') << (2 * p);
+        }
+        return state | (boatsFromPlacement(boardString, 18) << BOAT_SHIFT);
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the board string for the state
+     */
+    public static String toBoardString(long state) {
+        StringBuilder sb = new StringBuilder(26);
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            sb.append(isO(state, p) ? 'O' : 'N').append((char) ('0' + orientation(state, p)));
+        }
+        for (int c = 0; c < NUM_BOATS; c++) {
+            int edge = boatEdge(state, c);
+            if (edge != NO_BOAT)
+                sb.append(BOAT_COLOURS.charAt(c)).append((char) ('a' + edge));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Pack a boat placement such as "RvBa" into a boat word, in which every
+     * colour that does not appear in the placement is NO_BOAT.
+     * Boats may be listed in any order.
+     *
+     * @param placement a string of colour/edge pairs
+     * @return the boat word (20 bits, 5 per colour)
+     */
+    public static long boatsFromPlacement(String placement) {
+        return boatsFromPlacement(placement, 0);
+    }
+
+    private static long boatsFromPlacement(String s, int from) {
+        long boats = BOATS_MASK;
+        for (int i = from; i + 1 < s.length(); i += 2) {
+            int c = BOAT_COLOURS.indexOf(s.charAt(i));
+            long shift = (long) BOAT_BITS * c;
+            boats = (boats & ~(31L << shift)) | ((long) (s.charAt(i + 1) - 'a') << shift);
+        }
+        return boats;
+    }
+
+    /**
+     * @param placement a string of colour/edge pairs
+     * @return a mask over a boat word covering only the colours in the placement
+     */
+    public static long placementMask(String placement) {
+        long mask = 0;
+        for (int i = 0; i + 1 < placement.length(); i += 2) {
+            mask |= 31L << (BOAT_BITS * BOAT_COLOURS.indexOf(placement.charAt(i)));
+        }
+        return mask;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the boat word of the state (20 bits, 5 per colour)
+     */
+    public static long boats(long state) {
+        return state >>> BOAT_SHIFT;
+    }
+
+    /**
+     * @param state  a packed board state
+     * @param target a boat word, as from {@link #boatsFromPlacement(String)}
+     * @param mask   the mask for the target, as from {@link #placementMask(String)}
+     * @return true if every boat in the target is on its target edge
+     */
+    public static boolean isSolved(long state, long target, long mask) {
+        return (((state >>> BOAT_SHIFT) ^ target) & mask) == 0;
+    }
+
+    public static int orientation(long state, int position) {
+        return (int) (state >>> (2 * position)) & 3;
+    }
+
+    public static boolean isO(long state, int position) {
+        return (state >>> (TYPE_SHIFT + position) & 1) != 0;
+    }
+
+    /**
+     * @param state  a packed board state
+     * @param colour a boat colour index, 0-3 in order B, G, R, Y
+     * @return the edge (0-23) of the boat, or NO_BOAT
+     */
+    public static int boatEdge(long state, int colour) {
+        return (int) (state >>> (BOAT_SHIFT + BOAT_BITS * colour)) & 31;
+    }
+
+    /**
+     * @param state    a packed board state
+     * @param position a tile position
+     * @return the sides of the tile which have a gap, as a 4-bit mask
+     */
+    static int gaps(long state, int position) {
+        int type = (int) (state >>> (TYPE_SHIFT + position)) & 1;
+        return GAPS[type * 4 + orientation(state, position)];
+    }
+
+    /**
+     * @param state a packed board state
+     * @return a 9-bit mask of the tile positions that have a boat on at least one edge
+     */
+    public static int boatTiles(long state) {
+        int mask = 0;
+        long boats = state >>> BOAT_SHIFT;
+        for (int c = 0; c < NUM_BOATS; c++, boats >>>= BOAT_BITS) {
+            int edge = (int) boats & 31;
+            if (edge != NO_BOAT)
+                mask |= EDGE_TILES[edge];
+        }
+        return mask;
+    }
+
+    /**
+     * A tile can be rotated if there is a boat on at least one of its edges,
+     * and each neighbouring tile has a gap at the shared edge (so it does
+     * not occupy the space the rotating tile sweeps through).
+     *
+     * @param state    a packed, valid board state
+     * @param position the tile position, 0-8
+     * @return true if the tile at the position can be rotated
+     */
+    public static boolean canRotate(long state, int position) {
+        return ((boatTiles(state) & ~blockedMask(state)) >> position & 1) != 0;
+    }
+
+    /**
+     * @param state    a packed board state
+     * @param position the tile position, 0-8
+     * @return true if a neighbouring tile prevents the tile at the position from rotating
+     */
+    static boolean isBlocked(long state, int position) {
+        int[] neighbours = NEIGHBOURS[position];
+        for (int s = 0; s < 4; s++) {
+            int q = neighbours[s];
+            if (q >= 0 && (gaps(state, q) >> ((s + 2) & 3) & 1) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Blocking depends only on the tile types and orientations, so for each
+     * type layout in use a table of the blocked mask of every orientation
+     * vector (4^9 entries) is built once it has been used enough. Until
+     * then, and past MAX_BLOCKED_TABLES layouts, the mask is computed instead.
+     *
+     * @param state a packed board state
+     * @return a 9-bit mask of the tile positions that a neighbouring tile
+     * prevents from rotating
+     */
+    static int blockedMask(long state) {
+        int layout = (int) (state >>> TYPE_SHIFT) & ((1 << Tile.NUM_POSITIONS) - 1);
+        char[] table = BLOCKED_TABLES.get(layout);
+        if (table == null) {
+            // once no more tables can be built, nothing is written here, so
+            // threads do not contend for the counts
+            if (blockedTableCount.get() >= MAX_BLOCKED_TABLES)
+                return computeBlockedMask(state);
+            int count = blockedCounts[layout];
+            if (count < BLOCKED_TABLE_THRESHOLD) {
+                blockedCounts[layout] = count + 1;
+                return computeBlockedMask(state);
+            }
+            if ((table = buildBlockedTable(layout)) == null)
+                return computeBlockedMask(state);
+        }
+        return table[(int) (state & ORIENTATION_MASK)];
+    }
+
+    /**
+     * @return the table for the layout, or null if too many have been built
+     */
+    private static char[] buildBlockedTable(int layout) {
+        if (blockedTableCount.get() >= MAX_BLOCKED_TABLES)
+            return null;
+        char[] table = new char[1 << TYPE_SHIFT];
+        long types = (long) layout << TYPE_SHIFT;
+        for (int orientations = 0; orientations < table.length; orientations++)
+            table[orientations] = (char) computeBlockedMask(types | orientations);
+        // threads racing to build a table build the same one, and only one is kept
+        if (BLOCKED_TABLES.compareAndSet(layout, null, table))
+            blockedTableCount.incrementAndGet();
+        return BLOCKED_TABLES.get(layout);
+    }
+
+    private static int computeBlockedMask(long state) {
+        int mask = 0;
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            if (isBlocked(state, p))
+                mask |= 1 << p;
+        }
+        return mask;
+    }
+
+    /**
+     * Check a board after a rotation, given that it was valid before. The
+     * rotation changes only the rotated tile and the boats on its edges, so
+     * rather than every pair of tiles and boats, only the tile against its
+     * neighbours and the moved boats against the others are checked. A
+     * rotation cannot make a board ill-formed.
+     *
+     * @param rotated  the packed state after the rotation
+     * @param position the position of the rotated tile, 0-8
+     * @return true if the rotated state is valid
+     */
+    public static boolean isValidAfterRotation(long rotated, int position) {
+        int gaps = gaps(rotated, position);
+        int[] neighbours = NEIGHBOURS[position];
+        for (int s = 0; s < 4; s++) {
+            int q = neighbours[s];
+            if (q >= 0 && (gaps >> s & 1) == 0 && (gaps(rotated, q) >> ((s + 2) & 3) & 1) == 0)
+                return false;
+        }
+        return (sharedEdges(rotated) & TILE_EDGES[position]) == 0;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return a mask with bit e set for each edge e with more than one boat
+     */
+    private static int sharedEdges(long state) {
+        int occupied = 0;
+        int shared = 0;
+        long boats = state >>> BOAT_SHIFT;
+        for (int c = 0; c < NUM_BOATS; c++, boats >>>= BOAT_BITS) {
+            int edge = (int) boats & 31;
+            if (edge != NO_BOAT) {
+                shared |= occupied & (1 << edge);
+                occupied |= 1 << edge;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * The rules of {@link Vikings#isBoardStringWellFormed(String)} in one
+     * pass over the characters, without building any strings.
+     *
+     * @param boardString a board string
+     * @return true if the board string is well-formed
+     */
+    public static boolean isWellFormed(String boardString) {
+        int length = boardString.length();
+        if (length < 20 || length > 18 + 2 * NUM_BOATS || (length & 1) != 0)
+            return false;
+        int os = 0;
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            char type = boardString.charAt(2 * p);
+            char orientation = boardString.charAt(2 * p + 1);
+            if (type == 'O')
+                os++;
+            else if (type != 'N')
+                return false;
+            if (orientation < '0' || orientation > '3')
+                return false;
+        }
+        if (os != 3)
+            return false;
+        int previous = -1;
+        for (int i = 18; i < length; i += 2) {
+            int colour = BOAT_COLOURS.indexOf(boardString.charAt(i));
+            char edge = boardString.charAt(i + 1);
+            if (colour <= previous || edge < 'a' || edge > 'x')
+                return false;
+            previous = colour;
+        }
+        return true;
+    }
+
+    /**
+     * @param placement a target placement of boats, such as "RvBa"
+     * @return true if the placement is one to four colour/edge pairs, with
+     * each colour one of {@link #BOAT_COLOURS} at most once, and each edge
+     * 'a'-'x'
+     */
+    public static boolean isPlacementWellFormed(String placement) {
+        int length = placement.length();
+        if (length < 2 || length > 2 * NUM_BOATS || (length & 1) != 0)
+            return false;
+        int colours = 0;
+        for (int i = 0; i < length; i += 2) {
+            int colour = BOAT_COLOURS.indexOf(placement.charAt(i));
+            char edge = placement.charAt(i + 1);
+            if (colour < 0 || (colours >> colour & 1) != 0 || edge < 'a' || edge > 'x')
+                return false;
+            colours |= 1 << colour;
+        }
+        return true;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return true if no two boats share an edge, and no two adjacent tiles
+     * are both solid at the edge between them
+     */
+    public static boolean isValid(long state) {
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            // each pair once, from its left or top tile
+            for (int s = 1; s <= 2; s++) {
+                int q = NEIGHBOURS[p][s];
+                if (q >= 0 && ((gaps(state, p) >> s | gaps(state, q) >> ((s + 2) & 3)) & 1) == 0)
+                    return false;
+            }
+        }
+        return sharedEdges(state) == 0;
+    }
+
+    /**
+     * @return the side of the first tile which faces the second, or -1 if
+     * they are not adjacent
+     */
+    private static int facingSide(int position1, int position2) {
+        int[] neighbours = NEIGHBOURS[position1];
+        for (int s = 0; s < 4; s++) {
+            if (neighbours[s] == position2)
+                return s;
+        }
+        return -1;
+    }
+
+    /**
+     * @param state     a packed board state
+     * @param position1 a tile position, 0-8
+     * @param position2 another tile position, 0-8
+     * @return true if the tiles are adjacent and both solid at the edge
+     * between them, as {@link Vikings#doTilesOverlap(String, int, int)}
+     */
+    public static boolean doTilesOverlap(long state, int position1, int position2) {
+        int s = facingSide(position1, position2);
+        return s >= 0 && ((gaps(state, position1) >> s | gaps(state, position2) >> ((s + 2) & 3)) & 1) == 0;
+    }
+
+    /**
+     * @param state     a packed board state
+     * @param position1 a tile position, 0-8
+     * @param position2 another tile position, 0-8
+     * @return true if the tiles are adjacent and exactly one has a gap at
+     * the edge between them, as {@link Vikings#doTilesInterlock(String, int, int)}
+     */
+    public static boolean doTilesInterlock(long state, int position1, int position2) {
+        int s = facingSide(position1, position2);
+        return s >= 0 && ((gaps(state, position1) >> s ^ gaps(state, position2) >> ((s + 2) & 3)) & 1) != 0;
+    }
+
+    /**
+     * @param state a packed, valid board state
+     * @return a 9-bit mask of the tile positions which can be rotated
+     */
+    public static int rotatableMask(long state) {
+        return boatTiles(state) & ~blockedMask(state);
+    }
+
+    /**
+     * Rotate the tile at the given position one quarter-turn clockwise,
+     * moving the boats on its edges with it. No legality check is made.
+     *
+     * @param state    a packed board state
+     * @param position the tile position, 0-8
+     * @return the packed state after the rotation
+     */
+    public static long rotate(long state, int position) {
+        int shift = 2 * position;
+        long orientations = (state & ~(3L << shift)) | ((long) ((orientation(state, position) + 1) & 3) << shift);
+        long boats = state >>> BOAT_SHIFT;
+        long rotated = 0;
+        int base = position * 32;
+        for (int c = 0; c < NUM_BOATS; c++) {
+            int edge = (int) (boats >>> (BOAT_BITS * c)) & 31;
+            rotated |= (long) ROTATED_EDGE[base + edge] << (BOAT_BITS * c);
+        }
+        return (orientations & (ORIENTATION_MASK | TYPE_MASK)) | (rotated << BOAT_SHIFT);
+    }
+
+    /**
+     * The number of distinct ranks of states with the same tile types
+     */
+    public static final long NUM_RANKS = (1L << 18) * 25 * 25 * 25 * 25;
+
+    /**
+     * Number the states with the same tile types densely, from 0 to
+     * NUM_RANKS - 1. The orientations are the low 18 bits of the rank, and
+     * the boat edges (or 24 for no boat) the digits of a base-25 number above
+     * them, so states that differ only in orientations have nearby ranks.
+     *
+     * @param state a packed board state
+     * @return the rank of the state among those with the same tile types
+     */
+    public static long rank(long state) {
+        long boats = 0;
+        for (int c = NUM_BOATS - 1; c >= 0; c--) {
+            int edge = boatEdge(state, c);
+            boats = boats * 25 + (edge == NO_BOAT ? NUM_EDGES : edge);
+        }
+        return boats << 18 | (state & ORIENTATION_MASK);
+    }
+
+    /**
+     * @param rank  the rank of a state, as from {@link #rank(long)}
+     * @param types the tile types of the state, as its bits under TYPE_MASK
+     * @return the packed state
+     */
+    public static long unrank(long rank, long types) {
+        long state = (rank & ORIENTATION_MASK) | (types & TYPE_MASK);
+        long boats = rank >>> 18;
+        for (int c = 0; c < NUM_BOATS; c++) {
+            int edge = (int) (boats % 25);
+            boats /= 25;
+            state |= (long) (edge == NUM_EDGES ? NO_BOAT : edge) << (BOAT_SHIFT + BOAT_BITS * c);
+        }
+        return state;
+    }
+}
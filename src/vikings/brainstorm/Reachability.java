@@ -0,0 +1,221 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Detects objectives that can never be solved, using
+ * invariants of the game rather than search.
+ * <p>
+ * A set of tiles is <em>frozen</em> if none of them can ever rotate again,
+ * because each of them
+ * <ul>
+ * <li>has a frozen neighbour with no gap at their shared edge, which
+ * permanently occupies the space the tile would sweep through, or</li>
+ * <li>can never have a boat on any of its edges (a tile needs a boat to
+ * rotate) while the frozen tiles stay still.</li>
+ * </ul>
+ * Whichever tile of the set moved first would contradict this, so none of
+ * them ever moves; in particular, tiles which block each other in a cycle
+ * are frozen. A boat only moves around the tiles it sits on, so the edges a
+ * boat can ever reach are those connected to its current edge through tiles
+ * that are not frozen. If some boat's target edge is not reachable, the state
+ * is hopeless. The analysis over-approximates what is reachable, so it never
+ * rejects a solvable state.
+ * <p>
+ * All sets are bitmasks (9 bits of tiles, 24 bits of edges), so one analysis
+ * takes a few microseconds.
+ * <p>
+ * These invariants seldom decide anything. On the catalogue boards, 214
+ * single-boat targets cannot be reached, and the analysis rejects none of
+ * them. In every one, some tile never rotates, but only because the boats
+ * are never on that tile when its neighbours leave it free to turn.
+ * Whether that happens depends on the route the boats take, which these
+ * invariants do not model. So the goal of rejecting unsolvable objectives
+ * in microseconds is not met for a start seen for the first time. That
+ * query still enumerates every state reachable from the start: up to about
+ * 500,000 states, and 40 ms on average on those boards.
+ * <p>
+ * Every rotation can be undone (a tile that can rotate once can keep
+ * rotating, and four quarter-turns restore the board), so every state
+ * reachable from a start can reach every other. A state reached during a
+ * search is therefore never hopeless unless the start was, and the search
+ * need not test them. Instead, when a search exhausts the states reachable
+ * from its start, it records the boat placements it saw (see
+ * {@link #recordComponent}), and later objectives from the same start are
+ * answered from that record, in microseconds.
+ */
+public final class Reachability {
+    /**
+     * For each tile position, a mask of its four edges
+     */
+    static final int[] TILE_EDGE_MASKS = new int[Tile.NUM_POSITIONS];
+
+    static {
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            for (int s = 0; s < 4; s++)
+                TILE_EDGE_MASKS[p] |= 1 << PackedBoard.EDGES[p][s];
+        }
+    }
+
+    private static final int ALL_TILES = (1 << Tile.NUM_POSITIONS) - 1;
+
+    /* the distinct boat words reachable from the starts of exhausted
+       searches, least recently used first */
+    private static final int MAX_COMPONENTS = 256;
+    private static final Map<Long, long[]> components = new LinkedHashMap<Long, long[]>(MAX_COMPONENTS * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+            return size() > MAX_COMPONENTS;
+        }
+    };
+
+    private Reachability() {
+    }
+
+    /**
+     * @param state  a packed, valid board state
+     * @param target a boat word, as from {@link PackedBoard#boatsFromPlacement(String)}
+     * @param mask   the mask for the target, as from {@link PackedBoard#placementMask(String)}
+     * @return true if no sequence of rotations from the state can reach the target
+     */
+    public static boolean isHopeless(long state, long target, long mask) {
+        return isHopeless(state, PackedBoard.rotatableMask(state), target, mask);
+    }
+
+    /**
+     * As {@link #isHopeless(long, long, long)}, for a state whose rotatable
+     * tiles are already known.
+     */
+    static boolean isHopeless(long state, int rotatable, long target, long mask) {
+        Events.CacheLookup lookup = new Events.CacheLookup();
+        lookup.begin();
+        long[] boats;
+        synchronized (components) {
+            boats = components.get(state);
+        }
+        if (lookup.shouldCommit()) {
+            lookup.cache = "reachable components";
+            lookup.hit = boats != null;
+            lookup.commit();
+        }
+        if (boats != null) {
+            for (long b : boats) {
+                if (((b ^ target) & mask) == 0)
+                    return false;
+            }
+            return true;
+        }
+        int frozen = frozenTiles(state, rotatable);
+        for (int c = 0; c < PackedBoard.NUM_BOATS; c++) {
+            if ((mask >>> (PackedBoard.BOAT_BITS * c) & 31) == 0)
+                continue;
+            int edge = PackedBoard.boatEdge(state, c);
+            if (edge == PackedBoard.NO_BOAT)
+                return true;
+            int targetEdge = (int) (target >>> (PackedBoard.BOAT_BITS * c)) & 31;
+            if (frozen != 0 && (closure(1 << edge, frozen) >> targetEdge & 1) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param state a packed, valid board state
+     * @return a 9-bit mask of the tiles which can never rotate from this state on
+     */
+    public static int frozenTiles(long state) {
+        return frozenTiles(state, PackedBoard.rotatableMask(state));
+    }
+
+    /**
+     * @param state     a packed, valid board state
+     * @param rotatable the tiles which can be rotated in the state
+     * @return a 9-bit mask of the tiles which can never rotate from this state on
+     */
+    static int frozenTiles(long state, int rotatable) {
+        // Start by assuming every tile that cannot rotate now is frozen, and
+        // release the tiles that cannot be justified until the set is stable:
+        // a tile stays frozen only if it is blocked by a frozen tile, or no
+        // boat can reach it while the frozen tiles stay still. Blocking
+        // cycles stay frozen.
+        int frozen = ~rotatable & ALL_TILES;
+        if (frozen == 0)
+            return 0;
+        while (true) {
+            int edges = 0;
+            for (int c = 0; c < PackedBoard.NUM_BOATS; c++) {
+                int edge = PackedBoard.boatEdge(state, c);
+                if (edge != PackedBoard.NO_BOAT && (edges >> edge & 1) == 0)
+                    edges |= closure(1 << edge, frozen);
+            }
+            int next = frozen;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((next >> p & 1) != 0 && (TILE_EDGE_MASKS[p] & edges) != 0
+                        && !isBlockedByFrozen(state, p, frozen))
+                    next &= ~(1 << p);
+            }
+            if (next == frozen)
+                return frozen;
+            frozen = next;
+        }
+    }
+
+    /**
+     * @return true if a frozen neighbour of the tile has no gap facing it
+     */
+    private static boolean isBlockedByFrozen(long state, int position, int frozen) {
+        int[] neighbours = PackedBoard.NEIGHBOURS[position];
+        for (int s = 0; s < 4; s++) {
+            int q = neighbours[s];
+            if (q >= 0 && (frozen >> q & 1) != 0 && (PackedBoard.gaps(state, q) >> ((s + 2) & 3) & 1) == 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param edges  a mask of edges
+     * @param frozen a mask of frozen tiles
+     * @return the edges reachable from the given edges by rotating tiles that are not frozen
+     */
+    private static int closure(int edges, int frozen) {
+        int movable = ~frozen & ALL_TILES;
+        while (true) {
+            int next = edges;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((movable >> p & 1) != 0 && (TILE_EDGE_MASKS[p] & next) != 0)
+                    next |= TILE_EDGE_MASKS[p];
+            }
+            if (next == edges)
+                return edges;
+            edges = next;
+        }
+    }
+
+    /**
+     * Record every state reachable from a start, so that any later target
+     * from the same start can be checked without searching.
+     *
+     * @param states the states reachable from the start, which is states[0]
+     * @param count  the number of states
+     */
+    static void recordComponent(long[] states, int count) {
+        StateSet seen = new StateSet();
+        long[] boats = new long[16];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            long b = states[i] >>> PackedBoard.BOAT_SHIFT;
+            if (seen.add(b, n)) {
+                if (n == boats.length)
+                    boats = Arrays.copyOf(boats, n * 2);
+                boats[n++] = b;
+            }
+        }
+        boats = Arrays.copyOf(boats, n);
+        synchronized (components) {
+            components.put(states[0], boats);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Hosts many live games in one process.
+ * <p>
+ * Rather than a {@link Vikings} instance per game, each session is a packed
+ * board state, the index of its objective, a move count and a generation,
+ * held in parallel arrays (22 bytes per session, counting its slot in the
+ * free list).
+ * <p>
+ * A session is identified by a handle holding its slot in those arrays in
+ * the low 32 bits, and the generation of the slot, a 31-bit number, in the
+ * high bits, so that a handle is never negative. The generation changes
+ * whenever a session is closed, so a command that
+ * arrives after its session has closed is refused, rather than applied to
+ * the next session to use the slot.
+ * <p>
+ * Commands on different sessions run concurrently: each session belongs to
+ * one of a fixed number of lock stripes, and a command holds only the lock
+ * of its session's stripe.
+ */
+public class SessionHost {
+    /* results of a rotation command */
+    public static final int ROTATED = 0;
+    public static final int SOLVED = 1;
+    public static final int ILLEGAL = 2;
+    public static final int CLOSED = 3;
+
+    /**
+     * The state of a session that is not open; not a valid packed state
+     */
+    public static final long NO_STATE = -1;
+
+    private static final int STRIPES = 1024;
+    private static final short NO_OBJECTIVE = -1;
+
+    private final long[] states;
+    private final short[] objectiveIndexes;
+    private final int[] moveCounts;
+    /* the generation of each slot, 0 to Integer.MAX_VALUE */
+    final int[] generations;
+    private final Object[] locks = new Object[STRIPES];
+
+    /* the registered objectives, with their packed targets, guarded by this.
+       An entry is never changed once written, and the arrays are replaced
+       by larger copies as objectives are registered, so commands can read
+       them without the host's lock. */
+    private static final int MAX_OBJECTIVES = Short.MAX_VALUE;
+    private volatile Objective[] objectives = new Objective[16];
+    private volatile long[] targets = new long[16];
+    private volatile long[] targetMasks = new long[16];
+    private final Map<Objective, Integer> objectiveIndex = new IdentityHashMap<>();
+
+    /* guarded by freeIds: the ids of closed sessions, and the next unused id */
+    private final int[] freeIds;
+    private int freeCount = 0;
+    private int nextId = 0;
+
+    /**
+     * @param capacity the maximum number of sessions open at once
+     */
+    public SessionHost(int capacity) {
+        states = new long[capacity];
+        objectiveIndexes = new short[capacity];
+        moveCounts = new int[capacity];
+        generations = new int[capacity];
+        freeIds = new int[capacity];
+        Arrays.fill(objectiveIndexes, NO_OBJECTIVE);
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * @param objective an objective
+     * @return the index of the objective in this host, registering it if necessary
+     */
+    private synchronized int register(Objective objective) {
+        Integer index = objectiveIndex.get(objective);
+        if (index != null)
+            return index;
+        int i = objectiveIndex.size();
+        if (i == MAX_OBJECTIVES)
+            throw new IllegalStateException("Too many objectives");
+        Objective[] objectives = this.objectives;
+        long[] targets = this.targets;
+        long[] targetMasks = this.targetMasks;
+        if (i == objectives.length) {
+            int capacity = Math.min(i * 2, MAX_OBJECTIVES);
+            objectives = Arrays.copyOf(objectives, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            targetMasks = Arrays.copyOf(targetMasks, capacity);
+        }
+        targets[i] = PackedBoard.boatsFromPlacement(objective.getTargetPlacement());
+        targetMasks[i] = PackedBoard.placementMask(objective.getTargetPlacement());
+        objectives[i] = objective;
+        // publish the entries, in the copies if the arrays grew
+        this.targets = targets;
+        this.targetMasks = targetMasks;
+        this.objectives = objectives;
+        objectiveIndex.put(objective, i);
+        return i;
+    }
+
+    private static int slot(long session) {
+        return (int) session;
+    }
+
+    /**
+     * @return true if the handle is of the session now in its slot, and that
+     * session is open; called holding the slot's stripe lock
+     */
+    private boolean isOpen(long session) {
+        int slot = slot(session);
+        return session >= 0 && slot < states.length && generations[slot] == (int) (session >>> 32)
+                && objectiveIndexes[slot] != NO_OBJECTIVE;
+    }
+
+    private Object lock(long session) {
+        return locks[slot(session) & (STRIPES - 1)];
+    }
+
+    /**
+     * Open a new session playing the given objective from its initial state.
+     *
+     * @param objective the objective to play
+     * @return the handle of the new session, or -1 if the host is full
+     */
+    public long open(Objective objective) {
+        int index = register(objective);
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        int id;
+        synchronized (freeIds) {
+            if (freeCount > 0)
+                id = freeIds[--freeCount];
+            else if (nextId < states.length)
+                id = nextId++;
+            else
+                return -1;
+        }
+        synchronized (locks[id & (STRIPES - 1)]) {
+            states[id] = state;
+            moveCounts[id] = 0;
+            objectiveIndexes[id] = (short) index;
+            return (long) generations[id] << 32 | id;
+        }
+    }
+
+    /**
+     * Close a session, so that its slot can be reused. Closing a session
+     * that is already closed does nothing.
+     *
+     * @param session the handle of a session
+     */
+    public void close(long session) {
+        int slot = slot(session);
+        synchronized (lock(session)) {
+            if (!isOpen(session))
+                return;
+            objectiveIndexes[slot] = NO_OBJECTIVE;
+            // the generation is kept to 31 bits, so that handles are never
+            // negative, and wraps after 2^31 sessions in the slot
+            generations[slot] = (generations[slot] + 1) & Integer.MAX_VALUE;
+        }
+        synchronized (freeIds) {
+            freeIds[freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Rotate a tile of a session's board one quarter-turn clockwise.
+     *
+     * @param session  the handle of a session
+     * @param position the position of the tile to rotate, 0-8
+     * @return SOLVED if the rotation completed the objective, ROTATED if it
+     * was made, ILLEGAL if the tile cannot be rotated, or CLOSED if the
+     * session is not open
+     */
+    public int rotate(long session, int position) {
+        int slot = slot(session);
+        synchronized (lock(session)) {
+            if (!isOpen(session))
+                return CLOSED;
+            int index = objectiveIndexes[slot];
+            long state = states[slot];
+            if (!PackedBoard.canRotate(state, position))
+                return ILLEGAL;
+            state = PackedBoard.rotate(state, position);
+            states[slot] = state;
+            moveCounts[slot]++;
+            return PackedBoard.isSolved(state, targets[index], targetMasks[index]) ? SOLVED : ROTATED;
+        }
+    }
+
+    /**
+     * @param session the handle of a session
+     * @return the packed board state of the session, or NO_STATE if it is
+     * not open
+     */
+    public long getState(long session) {
+        synchronized (lock(session)) {
+            return isOpen(session) ? states[slot(session)] : NO_STATE;
+        }
+    }
+
+    /**
+     * @param session the handle of a session
+     * @return the current board string of the session, or null if it is not
+     * open
+     */
+    public String getBoardString(long session) {
+        long state = getState(session);
+        return state == NO_STATE ? null : PackedBoard.toBoardString(state);
+    }
+
+    /**
+     * @param session the handle of a session
+     * @return the number of rotations made in the session, or -1 if it is
+     * not open
+     */
+    public int getMoveCount(long session) {
+        synchronized (lock(session)) {
+            return isOpen(session) ? moveCounts[slot(session)] : -1;
+        }
+    }
+
+    /**
+     * @param session the handle of a session
+     * @return the objective of the session, or null if it is not open
+     */
+    public Objective getObjective(long session) {
+        synchronized (lock(session)) {
+            return isOpen(session) ? objectives[objectiveIndexes[slot(session)]] : null;
+        }
+    }
+
+    /**
+     * @return the number of open sessions
+     */
+    public int size() {
+        synchronized (freeIds) {
+            return nextId - freeCount;
+        }
+    }
+
+    /**
+     * @return the maximum number of sessions open at once
+     */
+    public int capacity() {
+        return states.length;
+    }
+}
@@ -0,0 +1,159 @@
+package vikings.brainstorm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a binary session journal written by {@link SessionRecorder}, and
+ * replays it headless against the packed board engine.
+ */
+public class SessionJournal {
+    /**
+     * Receives the records of a journal, in the order they were recorded.
+     */
+    public interface Visitor {
+        void gameStart(int objective, long timestamp);
+
+        void move(int objective, long timestamp, int position, int orientation);
+    }
+
+    /**
+     * The outcome of replaying a journal.
+     */
+    public static class Summary {
+        public int games;
+        public int completedGames;
+        public long moves;
+        public long illegalMoves;
+        /* legal moves made in a game after it was completed */
+        public long movesAfterCompletion;
+
+        @Override
+        public String toString() {
+            return games + " games (" + completedGames + " completed), " + moves + " moves, "
+                    + illegalMoves + " illegal, " + movesAfterCompletion + " after completion";
+        }
+    }
+
+    private final ByteBuffer records;
+
+    private SessionJournal(ByteBuffer records) {
+        this.records = records;
+    }
+
+    /**
+     * Open a journal file. The file is memory-mapped rather than read.
+     *
+     * @param journal the journal file
+     * @return the journal
+     * @throws IOException if the file cannot be read or is not a session journal
+     */
+    public static SessionJournal open(Path journal) throws IOException {
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SessionRecorder.HEADER_SIZE || buffer.getInt() != SessionRecorder.MAGIC)
+                throw new IOException("Not a session journal: " + journal);
+            short version = buffer.getShort();
+            if (version != SessionRecorder.VERSION)
+                throw new IOException("Unsupported session journal version " + version + ": " + journal);
+            return new SessionJournal(buffer.slice());
+        }
+    }
+
+    /**
+     * @return the number of complete records in the journal
+     */
+    public int size() {
+        return records.limit() / SessionRecorder.RECORD_SIZE;
+    }
+
+    /**
+     * Pass every record of the journal to a visitor.
+     *
+     * @param visitor the visitor
+     */
+    public void accept(Visitor visitor) {
+        int n = size();
+        for (int i = 0; i < n; i++) {
+            int offset = i * SessionRecorder.RECORD_SIZE;
+            int objective = records.get(offset);
+            long timestamp = records.getLong(offset + 1);
+            byte move = records.get(offset + 9);
+            if (move == SessionRecorder.GAME_START)
+                visitor.gameStart(objective, timestamp);
+            else
+                visitor.move(objective, timestamp, move >> 2, move & 3);
+        }
+    }
+
+    /**
+     * Replay every game in the journal from its objective's initial state.
+     * A move is illegal if the tile could not be rotated, if the recorded
+     * orientation does not match the replayed one, or if no game has
+     * started; illegal moves are skipped. The game accepts moves after it is
+     * completed, so those are replayed like any other, and counted in
+     * movesAfterCompletion as well; a game is counted as completed once,
+     * however often it reaches its target.
+     *
+     * @return a summary of the games and moves in the journal
+     */
+    public Summary replay() {
+        Summary summary = new Summary();
+        int n = size();
+        long state = 0;
+        long target = 0;
+        long mask = 0;
+        boolean started = false;
+        boolean solved = false;
+        for (int i = 0; i < n; i++) {
+            int offset = i * SessionRecorder.RECORD_SIZE;
+            byte move = records.get(offset + 9);
+            if (move == SessionRecorder.GAME_START) {
+                Objective objective = Objective.OBJECTIVES[records.get(offset)];
+                state = PackedBoard.fromBoardString(objective.getInitialState());
+                target = PackedBoard.boatsFromPlacement(objective.getTargetPlacement());
+                mask = PackedBoard.placementMask(objective.getTargetPlacement());
+                started = true;
+                solved = false;
+                summary.games++;
+                continue;
+            }
+            summary.moves++;
+            int position = move >> 2;
+            if (!started || !PackedBoard.canRotate(state, position)) {
+                summary.illegalMoves++;
+                continue;
+            }
+            state = PackedBoard.rotate(state, position);
+            if (PackedBoard.orientation(state, position) != (move & 3))
+                summary.illegalMoves++;
+            else if (solved)
+                summary.movesAfterCompletion++;
+            if (!solved && PackedBoard.isSolved(state, target, mask)) {
+                solved = true;
+                summary.completedGames++;
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Replay a journal file and print a summary with the replay rate.
+     *
+     * @param args the path of the journal file
+     * @throws IOException if the journal cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        SessionJournal journal = open(Paths.get(args[0]));
+        long start = System.nanoTime();
+        Summary summary = journal.replay();
+        long elapsed = System.nanoTime() - start;
+        System.out.println(summary);
+        System.out.printf("replayed %d records in %.1f ms (%.1f million moves/s)%n", journal.size(),
+                elapsed / 1e6, summary.moves * 1e3 / Math.max(1, elapsed));
+    }
+}
@@ -0,0 +1,163 @@
+package vikings.brainstorm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the moves of a playing session to an append-only binary journal.
+ * <p>
+ * Moves are written into a pre-allocated buffer by the caller (normally the
+ * JavaFX thread), and a background thread writes filled buffers to the
+ * journal file in batches, so recording a move never touches the disk.
+ * <p>
+ * The journal starts with a header (the int {@link #MAGIC} and the short
+ * {@link #VERSION}), followed by fixed-size records of {@link #RECORD_SIZE}
+ * bytes:
+ * <pre>
+ *   byte  objective (problem number, 0-59)
+ *   long  timestamp (System.nanoTime())
+ *   byte  move: position * 4 + new orientation, or GAME_START
+ * </pre>
+ * See {@link SessionJournal} for reading a journal back.
+ */
+public class SessionRecorder implements Closeable {
+    public static final int MAGIC = 0x564B534A; // "VKSJ"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 6;
+    public static final int RECORD_SIZE = 10;
+
+    /**
+     * The move byte which marks the start of a new game of the record's objective
+     */
+    public static final byte GAME_START = (byte) 0xFF;
+
+    private static final int BUFFER_RECORDS = 4096;
+    private static final long FLUSH_INTERVAL_MS = 250;
+
+    private final FileChannel channel;
+    private final Thread writer;
+
+    /* guarded by this: the buffer being filled and the one being written */
+    private ByteBuffer filling = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+    private ByteBuffer draining = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+    private boolean closed = false;
+    private IOException failure;
+
+    /**
+     * Open a journal file for appending, writing the header if the file is new.
+     *
+     * @param journal the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    public SessionRecorder(Path journal) throws IOException {
+        channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putShort(VERSION).flip();
+            channel.write(header);
+        }
+        writer = new Thread(this::writeLoop, "session-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record the start of a game.
+     *
+     * @param objective the problem number of the game's objective
+     */
+    public void recordGameStart(int objective) {
+        record(objective, GAME_START);
+    }
+
+    /**
+     * Record a single quarter-turn of a tile.
+     *
+     * @param objective   the problem number of the game's objective
+     * @param position    the position of the rotated tile, 0-8
+     * @param orientation the orientation of the tile after the rotation, 0-3
+     */
+    public void recordMove(int objective, int position, int orientation) {
+        record(objective, (byte) (position * 4 + orientation));
+    }
+
+    private synchronized void record(int objective, byte move) {
+        if (closed)
+            return;
+        while (filling.remaining() < RECORD_SIZE) {
+            // both buffers are full: wait for the writer to catch up
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        filling.put((byte) objective).putLong(System.nanoTime()).put(move);
+        if (filling.remaining() < RECORD_SIZE)
+            notifyAll();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            boolean last;
+            synchronized (this) {
+                if (!closed && filling.remaining() >= RECORD_SIZE) {
+                    try {
+                        wait(FLUSH_INTERVAL_MS);
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                batch = filling;
+                filling = draining;
+                draining = batch;
+                last = closed;
+                notifyAll();
+            }
+            batch.flip();
+            try {
+                while (batch.hasRemaining())
+                    channel.write(batch);
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    closed = true;
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+            if (last)
+                return;
+        }
+    }
+
+    /**
+     * Write any buffered moves and close the journal file.
+     *
+     * @throws IOException if a batch could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -0,0 +1,279 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Every shortest solution to an objective, held as a layered graph of the
+ * board states they pass through rather than as a list of strings.
+ * <p>
+ * Layer k holds the states that are k rotations from the start and that
+ * some shortest solution passes through, and each state records which
+ * rotations lead from it into the next layer. A solution is a path from
+ * the start (layer 0) to the last layer, whose states all solve the
+ * objective. Objectives with many interchangeable rotations have a number
+ * of solutions exponential in their length, but the graph stays no larger
+ * than the states searched.
+ */
+public class SolutionDag implements Iterable<String> {
+    /* the states of the graph, layer by layer, and where each layer starts */
+    private final long[] states;
+    private final int[] layerStarts;
+    /* for each state, the tiles whose rotation leads to a state in the next layer */
+    private final short[] moves;
+    /* for each state, the number of paths from it to the last layer */
+    private final long[] pathCounts;
+    private final StateSet index;
+
+    private SolutionDag(long[] states, int[] layerStarts, short[] moves, long[] pathCounts, StateSet index) {
+        this.states = states;
+        this.layerStarts = layerStarts;
+        this.moves = moves;
+        this.pathCounts = pathCounts;
+        this.index = index;
+    }
+
+    /**
+     * @param objective an objective for the Vikings game
+     * @return the shortest solutions to the objective
+     */
+    public static SolutionDag build(Objective objective) {
+        return build(objective.getInitialState(), objective.getTargetPlacement());
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @return the shortest sequences of rotations that move every boat in the
+     * target placement to its target edge; empty if there are none
+     */
+    public static SolutionDag build(String initialState, String targetPlacement) {
+        long start = PackedBoard.fromBoardString(initialState);
+        long target = PackedBoard.boatsFromPlacement(targetPlacement);
+        long mask = PackedBoard.placementMask(targetPlacement);
+        if (!PackedBoard.isSolved(start, target, mask) && Reachability.isHopeless(start, target, mask))
+            return new SolutionDag(new long[0], new int[]{0}, new short[0], new long[0], new StateSet());
+
+        // search whole layers until one contains a solved state
+        long[] searched = new long[1 << 12];
+        StateSet depths = new StateSet();
+        searched[0] = start;
+        depths.add(start, 0);
+        int layerStart = 0, layerEnd = 1, depth = 0;
+        while (!hasSolved(searched, layerStart, layerEnd, target, mask)) {
+            int tail = layerEnd;
+            for (int i = layerStart; i < layerEnd; i++) {
+                long state = searched[i];
+                int rotatable = PackedBoard.rotatableMask(state);
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    if ((rotatable >> p & 1) == 0)
+                        continue;
+                    long next = PackedBoard.rotate(state, p);
+                    if (!depths.add(next, depth + 1))
+                        continue;
+                    if (tail == searched.length)
+                        searched = Arrays.copyOf(searched, tail * 2);
+                    searched[tail++] = next;
+                }
+            }
+            if (tail == layerEnd)
+                return new SolutionDag(new long[0], new int[]{0}, new short[0], new long[0], new StateSet());
+            layerStart = layerEnd;
+            layerEnd = tail;
+            depth++;
+        }
+
+        // walk back from the solved states, building each layer of the DAG
+        // from the states of the layer before it that lead to a state already
+        // in the DAG. A rotation can be undone by three more, so the states
+        // leading to a state are found by rotating it back.
+        long[][] layers = new long[depth + 1][];
+        short[][] layerMoves = new short[depth + 1][];
+        int count = 0;
+        for (int i = layerStart; i < layerEnd; i++) {
+            if (PackedBoard.isSolved(searched[i], target, mask))
+                searched[layerStart + count++] = searched[i];
+        }
+        layers[depth] = Arrays.copyOfRange(searched, layerStart, layerStart + count);
+        layerMoves[depth] = new short[count];
+        for (int k = depth; k > 0; k--) {
+            long[] layer = layers[k];
+            long[] previous = new long[16];
+            short[] previousMoves = new short[16];
+            StateSet previousIndex = new StateSet();
+            int n = 0;
+            for (long state : layer) {
+                int rotatable = PackedBoard.rotatableMask(state);
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    if ((rotatable >> p & 1) == 0)
+                        continue;
+                    long before = PackedBoard.rotate(PackedBoard.rotate(PackedBoard.rotate(state, p), p), p);
+                    if (depths.get(before) != k - 1)
+                        continue;
+                    int j = previousIndex.get(before);
+                    if (j == StateSet.NOT_FOUND) {
+                        j = n++;
+                        previousIndex.add(before, j);
+                        if (j == previous.length) {
+                            previous = Arrays.copyOf(previous, j * 2);
+                            previousMoves = Arrays.copyOf(previousMoves, j * 2);
+                        }
+                        previous[j] = before;
+                    }
+                    previousMoves[j] |= 1 << p;
+                }
+            }
+            layers[k - 1] = Arrays.copyOf(previous, n);
+            layerMoves[k - 1] = Arrays.copyOf(previousMoves, n);
+        }
+
+        // flatten the layers, counting paths from the last layer back
+        int[] layerStarts = new int[depth + 2];
+        for (int k = 0; k <= depth; k++)
+            layerStarts[k + 1] = layerStarts[k] + layers[k].length;
+        int size = layerStarts[depth + 1];
+        long[] states = new long[size];
+        short[] moves = new short[size];
+        long[] pathCounts = new long[size];
+        StateSet index = new StateSet(size);
+        for (int k = 0; k <= depth; k++) {
+            System.arraycopy(layers[k], 0, states, layerStarts[k], layers[k].length);
+            System.arraycopy(layerMoves[k], 0, moves, layerStarts[k], layers[k].length);
+            for (int i = layerStarts[k]; i < layerStarts[k + 1]; i++)
+                index.add(states[i], i);
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            if (moves[i] == 0) {
+                pathCounts[i] = 1;
+                continue;
+            }
+            long paths = 0;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((moves[i] >> p & 1) != 0)
+                    paths = saturatedAdd(paths, pathCounts[index.get(PackedBoard.rotate(states[i], p))]);
+            }
+            pathCounts[i] = paths;
+        }
+        return new SolutionDag(states, layerStarts, moves, pathCounts, index);
+    }
+
+    private static boolean hasSolved(long[] states, int from, int to, long target, long mask) {
+        for (int i = from; i < to; i++) {
+            if (PackedBoard.isSolved(states[i], target, mask))
+                return true;
+        }
+        return false;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * @return true if the objective has a solution
+     */
+    public boolean isSolvable() {
+        return states.length > 0;
+    }
+
+    /**
+     * @return the number of rotations in a shortest solution, or -1 if there is none
+     */
+    public int getSolutionLength() {
+        return layerStarts.length - 2;
+    }
+
+    /**
+     * @return the number of states in the graph
+     */
+    public int size() {
+        return states.length;
+    }
+
+    /**
+     * @return the number of distinct shortest solutions (Long.MAX_VALUE if
+     * there are more than that)
+     */
+    public long countSolutions() {
+        return states.length == 0 ? 0 : pathCounts[0];
+    }
+
+    /**
+     * Check a sequence of rotations in time proportional to its length.
+     *
+     * @param solution a sequence of tile positions, as returned by the solver
+     * @return true if it is one of the shortest solutions
+     */
+    public boolean isOptimal(String solution) {
+        if (states.length == 0 || solution.length() != getSolutionLength())
+            return false;
+        int i = 0;
+        for (int k = 0; k < solution.length(); k++) {
+            int p = solution.charAt(k) - '0';
+            if (p < 0 || p >= Tile.NUM_POSITIONS || (moves[i] >> p & 1) == 0)
+                return false;
+            i = index.get(PackedBoard.rotate(states[i], p));
+        }
+        return true;
+    }
+
+    /**
+     * @return an iterator over the shortest solutions, which generates each
+     * one as it is requested
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            /* a depth-first walk: the state at each depth, and the moves from
+               it that are still to be taken */
+            final int length = getSolutionLength();
+            final int[] path = new int[Math.max(length + 1, 1)];
+            final int[] remaining = new int[Math.max(length + 1, 1)];
+            final char[] moveChars = new char[Math.max(length, 0)];
+            boolean hasNext = states.length > 0;
+            boolean started = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!started && hasNext) {
+                    started = true;
+                    remaining[0] = moves[0];
+                    hasNext = descend(0);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                String solution = new String(moveChars);
+                hasNext = advance();
+                return solution;
+            }
+
+            /* extend the path from the given depth to the last layer */
+            private boolean descend(int depth) {
+                for (int k = depth; k < length; k++) {
+                    int p = Integer.numberOfTrailingZeros(remaining[k]);
+                    remaining[k] &= ~(1 << p);
+                    moveChars[k] = (char) ('0' + p);
+                    path[k + 1] = index.get(PackedBoard.rotate(states[path[k]], p));
+                    remaining[k + 1] = moves[path[k + 1]];
+                }
+                return true;
+            }
+
+            /* move to the next path after the current one */
+            private boolean advance() {
+                for (int k = length - 1; k >= 0; k--) {
+                    if (remaining[k] != 0)
+                        return descend(k);
+                }
+                return false;
+            }
+        };
+    }
+}
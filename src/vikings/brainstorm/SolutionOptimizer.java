@@ -0,0 +1,203 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+
+/**
+ * Shortens valid but long solutions, such as those played by hand or made
+ * by heuristic search.
+ * <p>
+ * The optimizer replays a solution to find the states it passes through,
+ * then walks along them. From each state it removes any loop back to the
+ * same state, and otherwise searches every state within a small number of
+ * rotations (the window). If that search reaches a later state of the
+ * solution, or any solved state, in fewer rotations than the solution
+ * takes, the shortcut is spliced in. Passes repeat until one makes no
+ * improvement. The result is not necessarily shortest, but each window
+ * search is bounded, so the cost grows linearly with the solution's length.
+ * <p>
+ * An optimizer keeps its work arrays between calls, so reusing one
+ * instance for many solutions avoids most allocation. Instances are not
+ * thread-safe.
+ */
+public class SolutionOptimizer {
+    /**
+     * The default number of rotations searched from each state
+     */
+    public static final int DEFAULT_WINDOW = 6;
+
+    private final int window;
+
+    /* the states of the solution being optimised, and the index of the last
+       time each state appears in it */
+    private long[] path = new long[64];
+    private final StateSet pathIndex = new StateSet();
+
+    /* the window search: states in the order found, with their parents, the
+       tile rotated to reach them and their depth */
+    private long[] states = new long[1 << 10];
+    private int[] parents = new int[1 << 10];
+    private byte[] moves = new byte[1 << 10];
+    private byte[] depths = new byte[1 << 10];
+    private final StateSet seen = new StateSet();
+
+    public SolutionOptimizer() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param window the number of rotations searched from each state; the
+     *               work per state grows exponentially with it
+     */
+    public SolutionOptimizer(int window) {
+        if (window < 1 || window > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Bad window " + window);
+        this.window = window;
+    }
+
+    /**
+     * @param objective an objective for the Vikings game
+     * @param solution  a sequence of rotations that solves the objective
+     * @return a sequence of rotations, no longer than the given one, that
+     * also solves the objective
+     * @throws IllegalArgumentException if the solution is not a legal
+     *                                  sequence of rotations that solves the objective
+     */
+    public String optimize(Objective objective, String solution) {
+        return optimize(objective.getInitialState(), objective.getTargetPlacement(), solution);
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @param solution        a sequence of rotations from the initial state
+     *                        that moves every boat in the target placement
+     *                        to its target edge
+     * @return a sequence of rotations, no longer than the given one, that
+     * also does so
+     * @throws IllegalArgumentException if the solution is not a legal
+     *                                  sequence of rotations that reaches the target
+     */
+    public String optimize(String initialState, String targetPlacement, String solution) {
+        long start = PackedBoard.fromBoardString(initialState);
+        long target = PackedBoard.boatsFromPlacement(targetPlacement);
+        long mask = PackedBoard.placementMask(targetPlacement);
+        long state = start;
+        for (int i = 0; i < solution.length(); i++) {
+            int position = solution.charAt(i) - '0';
+            if (position < 0 || position >= Tile.NUM_POSITIONS || !PackedBoard.canRotate(state, position))
+                throw new IllegalArgumentException("Illegal rotation " + i + " in " + solution);
+            state = PackedBoard.rotate(state, position);
+        }
+        if (!PackedBoard.isSolved(state, target, mask))
+            throw new IllegalArgumentException("Solution " + solution + " does not reach " + targetPlacement);
+
+        String best = solution;
+        while (true) {
+            String shorter = pass(start, target, mask, best);
+            if (shorter.length() >= best.length())
+                return best;
+            best = shorter;
+        }
+    }
+
+    /**
+     * Make one pass along a valid solution, taking every shortcut found.
+     */
+    private String pass(long start, long target, long mask, String solution) {
+        int n = solution.length();
+        if (path.length <= n)
+            path = new long[Integer.highestOneBit(n) << 1];
+        path[0] = start;
+        for (int i = 0; i < n; i++)
+            path[i + 1] = PackedBoard.rotate(path[i], solution.charAt(i) - '0');
+        // index each state by the last time it appears, so loops are cut whole
+        pathIndex.clear();
+        for (int i = n; i >= 0; i--)
+            pathIndex.add(path[i], i);
+
+        StringBuilder result = new StringBuilder(n);
+        int i = 0;
+        while (i < n) {
+            int last = pathIndex.get(path[i]);
+            if (last > i) {
+                i = last;
+                continue;
+            }
+            int found = search(path[i], i, n, target, mask);
+            if (found >= 0) {
+                int j = PackedBoard.isSolved(states[found], target, mask) ? n : pathIndex.get(states[found]);
+                appendPath(result, found);
+                i = j;
+            } else {
+                result.append(solution.charAt(i));
+                i++;
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Search the window around a state of the solution for the shortcut that
+     * saves the most rotations.
+     *
+     * @return the index of the end of the best shortcut in the search arrays,
+     * or -1 if there is none
+     */
+    private int search(long from, int index, int n, long target, long mask) {
+        seen.clear();
+        seen.add(from, 0);
+        states[0] = from;
+        depths[0] = 0;
+        int best = -1;
+        int bestSaving = 0;
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            long state = states[head];
+            int depth = depths[head];
+            int saving = (PackedBoard.isSolved(state, target, mask) ? n : Math.max(pathIndex.get(state), 0))
+                    - index - depth;
+            if (saving > bestSaving) {
+                best = head;
+                bestSaving = saving;
+            }
+            if (depth == window)
+                continue;
+            int rotatable = PackedBoard.rotatableMask(state);
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = PackedBoard.rotate(state, p);
+                if (!seen.add(next, tail))
+                    continue;
+                if (tail == states.length)
+                    grow();
+                states[tail] = next;
+                parents[tail] = head;
+                moves[tail] = (byte) p;
+                depths[tail] = (byte) (depth + 1);
+                tail++;
+            }
+        }
+        return best;
+    }
+
+    private void appendPath(StringBuilder result, int index) {
+        int from = result.length();
+        for (int k = index; k != 0; k = parents[k])
+            result.append((char) ('0' + moves[k]));
+        // the moves were appended last first
+        for (int a = from, b = result.length() - 1; a < b; a++, b--) {
+            char c = result.charAt(a);
+            result.setCharAt(a, result.charAt(b));
+            result.setCharAt(b, c);
+        }
+    }
+
+    private void grow() {
+        int capacity = states.length * 2;
+        states = Arrays.copyOf(states, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        depths = Arrays.copyOf(depths, capacity);
+    }
+}
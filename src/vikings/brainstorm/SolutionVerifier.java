@@ -0,0 +1,193 @@
+package vikings.brainstorm;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Checks submitted solutions, such as the entries of a leaderboard, in
+ * bulk.
+ * <p>
+ * A submission is replayed on the packed state of its objective's initial
+ * board, one rotation at a time. Each rotation must be of a tile that
+ * {@link Vikings#canRotateTile(String, int)} would allow, and after the
+ * last one every boat in the objective's target placement must be on its
+ * target edge. The replay builds no strings or boards, so a submission
+ * costs a few tens of nanoseconds per rotation.
+ * <p>
+ * The length of a shortest solution of each objective is found with the
+ * {@link Solver} the first time the objective is seen, and kept, keyed by
+ * the Objective instance, so that each verdict can say how far a valid
+ * submission is from optimal. A verifier can be used from many threads.
+ */
+public class SolutionVerifier {
+    /**
+     * The outcome of checking a submission
+     */
+    public enum Status {
+        /**
+         * Every rotation is legal, and the target placement is reached
+         */
+        VALID,
+        /**
+         * A rotation is not a tile position 0-8, or the tile cannot rotate
+         */
+        ILLEGAL_ROTATION,
+        /**
+         * Every rotation is legal, but the target placement is not reached
+         */
+        NOT_SOLVED
+    }
+
+    /**
+     * The verdict on one submission.
+     */
+    public static final class Verdict {
+        private final Status status;
+        private final int illegalStep;
+        private final int length;
+        private final int optimalLength;
+
+        Verdict(Status status, int illegalStep, int length, int optimalLength) {
+            this.status = status;
+            this.illegalStep = illegalStep;
+            this.length = length;
+            this.optimalLength = optimalLength;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isValid() {
+            return status == Status.VALID;
+        }
+
+        /**
+         * @return the index in the submission of the first illegal rotation,
+         * or -1 if every rotation is legal
+         */
+        public int getIllegalStep() {
+            return illegalStep;
+        }
+
+        /**
+         * @return the number of rotations in the submission
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the length of a shortest solution of the objective, or -1
+         * if it has none
+         */
+        public int getOptimalLength() {
+            return optimalLength;
+        }
+
+        /**
+         * @return the number of rotations a valid submission makes beyond a
+         * shortest solution, or -1 if the submission is not valid
+         */
+        public int getExcess() {
+            return isValid() ? length - optimalLength : -1;
+        }
+
+        @Override
+        public String toString() {
+            switch (status) {
+                case VALID:
+                    return "valid, " + length + " rotations (" + getExcess() + " more than optimal)";
+                case ILLEGAL_ROTATION:
+                    return "illegal rotation at step " + illegalStep;
+                default:
+                    return "legal, but does not reach the target";
+            }
+        }
+    }
+
+    /**
+     * What is needed to replay submissions of one objective.
+     */
+    private static final class Plan {
+        final long start;
+        final long target;
+        final long mask;
+        final int optimalLength;
+
+        Plan(Objective objective) {
+            start = PackedBoard.fromBoardString(objective.getInitialState());
+            target = PackedBoard.boatsFromPlacement(objective.getTargetPlacement());
+            mask = PackedBoard.placementMask(objective.getTargetPlacement());
+            if (PackedBoard.isSolved(start, target, mask)) {
+                optimalLength = 0;
+            } else {
+                // the empty string is returned only when there is no solution
+                int length = new Solver().solve(objective).length();
+                optimalLength = length == 0 ? -1 : length;
+            }
+        }
+    }
+
+    /* the plan of each objective seen, completed by the thread that first
+       needed it; the search runs outside the map's locks */
+    private final Map<Objective, CompletableFuture<Plan>> plans = new ConcurrentHashMap<>();
+
+    private Plan plan(Objective objective) {
+        CompletableFuture<Plan> plan = plans.get(objective);
+        if (plan == null) {
+            CompletableFuture<Plan> created = new CompletableFuture<>();
+            plan = plans.putIfAbsent(objective, created);
+            if (plan == null) {
+                try {
+                    created.complete(new Plan(objective));
+                } catch (RuntimeException | Error e) {
+                    // let a later submission try again
+                    plans.remove(objective, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+                plan = created;
+            }
+        }
+        return plan.join();
+    }
+
+    /**
+     * @param objective  an objective for the Vikings game
+     * @param submission a sequence of rotations, each a tile position '0'-'8'
+     * @return the verdict on the submission
+     */
+    public Verdict verify(Objective objective, String submission) {
+        Plan plan = plan(objective);
+        long state = plan.start;
+        int n = submission.length();
+        for (int i = 0; i < n; i++) {
+            int position = submission.charAt(i) - '0';
+            if (position < 0 || position >= Tile.NUM_POSITIONS || !PackedBoard.canRotate(state, position))
+                return new Verdict(Status.ILLEGAL_ROTATION, i, n, plan.optimalLength);
+            state = PackedBoard.rotate(state, position);
+        }
+        Status status = PackedBoard.isSolved(state, plan.target, plan.mask) ? Status.VALID : Status.NOT_SOLVED;
+        return new Verdict(status, -1, n, plan.optimalLength);
+    }
+
+    /**
+     * Verify a batch of submissions in parallel, on the common fork-join pool.
+     *
+     * @param objectives  the objective of each submission
+     * @param submissions the submissions
+     * @return the verdict on each submission, in the same order
+     */
+    public Verdict[] verify(Objective[] objectives, String[] submissions) {
+        if (objectives.length != submissions.length)
+            throw new IllegalArgumentException(objectives.length + " objectives for " + submissions.length
+                    + " submissions");
+        Verdict[] verdicts = new Verdict[submissions.length];
+        IntStream.range(0, submissions.length).parallel()
+                .forEach(i -> verdicts[i] = verify(objectives[i], submissions[i]));
+        return verdicts;
+    }
+}
@@ -0,0 +1,522 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest solutions to Vikings objectives by a breadth-first search
+ * over packed board states (see {@link PackedBoard}).
+ * <p>
+ * Objectives which are provably unsolvable are rejected before searching,
+ * and a search which finds no solution records every boat placement
+ * reachable from its start, so that later objectives from that start are
+ * answered without searching (see {@link Reachability}).
+ * <p>
+ * Rotations of tiles which are not next to each other commute: neither
+ * changes whether the other can rotate, nor moves the other's boats. The
+ * search only takes such a pair in one order, the higher position after
+ * the lower, so it generates each permutation of independent rotations
+ * once rather than once per interleaving. A state reached by several
+ * rotations in the same layer may take any move allowed by one of them.
+ * <p>
+ * The search can also take "macro" moves, each rotating one tile by one to
+ * three quarter-turns, to minimise the number of tile grabs rather than
+ * quarter-turns (see {@link Metric}). Solutions are always returned with
+ * one character per quarter-turn.
+ * <p>
+ * A solver keeps its work arrays between searches, so reusing one instance
+ * for many solves avoids most allocation. Instances are not thread-safe.
+ */
+public class Solver {
+    /**
+     * For each tile position p, a mask of the positions below p which are
+     * not next to it, so that rotating them commutes with rotating p
+     */
+    static final short[] COMMUTING_BELOW = new short[Tile.NUM_POSITIONS];
+
+    static {
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            int adjacent = 1 << p;
+            for (int q : PackedBoard.NEIGHBOURS[p]) {
+                if (q >= 0)
+                    adjacent |= 1 << q;
+            }
+            COMMUTING_BELOW[p] = (short) (((1 << p) - 1) & ~adjacent);
+        }
+    }
+
+    /**
+     * What a shortest solution minimises
+     */
+    public enum Metric {
+        /**
+         * The number of quarter-turns, as in {@link #solve(String, String)}
+         */
+        QUARTER_TURNS,
+        /**
+         * The number of times a tile is grabbed and turned by one, two or
+         * three quarter-turns, so "888555" counts as two
+         */
+        TILE_GRABS
+    }
+
+    /* the states in the order they were discovered, with the index of the
+       state they were reached from and the move made to reach them: a tile
+       position, plus 16 for each quarter-turn after the first */
+    private long[] states = new long[1 << 12];
+    private int[] parents = new int[1 << 12];
+    private byte[] moves = new byte[1 << 12];
+    /* for each state, the rotations that need not be taken from it */
+    private short[] skipped = new short[1 << 12];
+    /* for each state, the quarter-turns needed to reach it (macro moves only) */
+    private int[] costs = new int[1 << 12];
+    /* queues of state indexes, by cost modulo 4 (macro moves only) */
+    private final int[][] buckets = new int[4][1 << 10];
+    private final int[] bucketSizes = new int[4];
+    private final StateSet visited = new StateSet();
+
+    /* the number of states expanded, and successors generated, by the last search */
+    private long nodes;
+    private long generated;
+
+    /**
+     * @param objective an objective for the Vikings game
+     * @return a shortest sequence of rotations that solves it, or an empty
+     * String if no solution exists
+     */
+    public String solve(Objective objective) {
+        return solve(objective.getInitialState(), objective.getTargetPlacement(), null,
+                objective.getProblemNumber());
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @return a shortest sequence of rotations that moves every boat in the
+     * target placement to its target edge, or an empty String if no solution exists
+     */
+    public String solve(String initialState, String targetPlacement) {
+        return solve(initialState, targetPlacement, null, -1);
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @param metric          what the solution should minimise
+     * @return a sequence of rotations that moves every boat in the target
+     * placement to its target edge and is shortest by the metric, or an
+     * empty String if no solution exists
+     */
+    public String solve(String initialState, String targetPlacement, Metric metric) {
+        return solve(initialState, targetPlacement, metric, -1);
+    }
+
+    /**
+     * Solve many target placements from one initial board with a single
+     * breadth-first search. Each state found is looked up in an index of the
+     * targets, once for each distinct set of boats they name, and the search
+     * stops when every target has been reached. Solving K targets costs
+     * about as much as solving the hardest of them alone, rather than K
+     * searches.
+     *
+     * @param initialState     a valid board string
+     * @param targetPlacements target placements of the boats
+     * @return for each target placement, a shortest sequence of rotations
+     * that moves every boat in it to its target edge, or an empty String if
+     * no solution exists
+     */
+    public String[] solve(String initialState, String[] targetPlacements) {
+        Events.Solve event = new Events.Solve();
+        event.begin();
+        String[] solutions = searchAll(initialState, targetPlacements);
+        if (event.shouldCommit()) {
+            event.initialState = initialState;
+            event.targetPlacement = String.join(" ", targetPlacements);
+            event.algorithm = "BFS (" + targetPlacements.length + " targets)";
+            event.nodes = nodes;
+            int longest = -1;
+            for (int t = 0; t < solutions.length; t++) {
+                if (!solutions[t].isEmpty() || isSolved(initialState, targetPlacements[t]))
+                    longest = Math.max(longest, solutions[t].length());
+            }
+            event.length = longest;
+            event.commit();
+        }
+        return solutions;
+    }
+
+    /**
+     * @return the key of a target in the index of targets: the mask, which
+     * is never 0, above the boat word under the mask
+     */
+    private static long targetKey(long boats, long mask) {
+        return mask << (PackedBoard.BOAT_BITS * PackedBoard.NUM_BOATS) | (boats & mask);
+    }
+
+    private String[] searchAll(String initialState, String[] targetPlacements) {
+        int k = targetPlacements.length;
+        String[] solutions = new String[k];
+        long start = PackedBoard.fromBoardString(initialState);
+        nodes = 0;
+        generated = 0;
+        // index the targets still to be solved; targets with the same key
+        // are chained from the one in the index
+        StateSet index = new StateSet(k);
+        int[] sameKey = new int[k];
+        long[] masks = new long[k];
+        int maskCount = 0;
+        int remaining = 0;
+        for (int t = 0; t < k; t++) {
+            long target = PackedBoard.boatsFromPlacement(targetPlacements[t]);
+            long mask = PackedBoard.placementMask(targetPlacements[t]);
+            if (PackedBoard.isSolved(start, target, mask) || Reachability.isHopeless(start, target, mask)) {
+                solutions[t] = "";
+                continue;
+            }
+            long key = targetKey(target, mask);
+            int first = index.get(key);
+            if (first == StateSet.NOT_FOUND) {
+                index.add(key, t);
+                sameKey[t] = StateSet.NOT_FOUND;
+            } else {
+                sameKey[t] = sameKey[first];
+                sameKey[first] = t;
+            }
+            int m = 0;
+            while (m < maskCount && masks[m] != mask)
+                m++;
+            if (m == maskCount)
+                masks[maskCount++] = mask;
+            remaining++;
+        }
+        if (remaining == 0)
+            return solutions;
+
+        // the search of solveLayers, checking every target
+        visited.clear();
+        visited.add(start, 0);
+        states[0] = start;
+        skipped[0] = 0;
+        int tail = 1;
+        int layerStart = 0;
+        int layerEnd = 1;
+        int depth = 0;
+        Events.Layer layer = new Events.Layer();
+        layer.begin();
+        int head = 0;
+        for (; head < tail && remaining > 0; head++) {
+            if (head == layerEnd) {
+                layer = endLayer(layer, depth++, layerEnd - layerStart);
+                layerStart = layerEnd;
+                layerEnd = tail;
+            }
+            long state = states[head];
+            nodes++;
+            int rotatable = PackedBoard.rotatableMask(state) & ~skipped[head];
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = PackedBoard.rotate(state, p);
+                generated++;
+                if (!visited.add(next, tail)) {
+                    int i = visited.get(next);
+                    if (i >= layerEnd)
+                        skipped[i] &= COMMUTING_BELOW[p];
+                    continue;
+                }
+                if (tail == states.length)
+                    grow();
+                states[tail] = next;
+                parents[tail] = head;
+                moves[tail] = (byte) p;
+                skipped[tail] = COMMUTING_BELOW[p];
+                long boats = PackedBoard.boats(next);
+                for (int m = 0; m < maskCount; m++) {
+                    int t = index.get(targetKey(boats, masks[m]));
+                    if (t == StateSet.NOT_FOUND || solutions[t] != null)
+                        continue;
+                    String solution = path(tail);
+                    for (; t != StateSet.NOT_FOUND; t = sameKey[t]) {
+                        solutions[t] = solution;
+                        remaining--;
+                    }
+                }
+                tail++;
+            }
+        }
+        if (head == tail)
+            Reachability.recordComponent(states, tail);
+        for (int t = 0; t < k; t++) {
+            if (solutions[t] == null)
+                solutions[t] = "";
+        }
+        return solutions;
+    }
+
+    /**
+     * Search, and record a flight recorder event for the search.
+     *
+     * @param metric    the metric of the solution, or null for the plain
+     *                  breadth-first search over quarter-turns
+     * @param objective the problem number of the objective, or -1
+     */
+    private String solve(String initialState, String targetPlacement, Metric metric, int objective) {
+        Events.Solve event = new Events.Solve();
+        event.begin();
+        String solution = search(initialState, targetPlacement, metric);
+        if (event.shouldCommit()) {
+            event.objective = objective;
+            event.initialState = initialState;
+            event.targetPlacement = targetPlacement;
+            event.algorithm = metric == null ? "BFS" : metric == Metric.TILE_GRABS ? "BFS (tile grabs)"
+                    : "Dial (quarter-turns)";
+            event.nodes = nodes;
+            event.length = solution.isEmpty() && !isSolved(initialState, targetPlacement) ? -1 : solution.length();
+            event.commit();
+        }
+        return solution;
+    }
+
+    private static boolean isSolved(String initialState, String targetPlacement) {
+        return PackedBoard.isSolved(PackedBoard.fromBoardString(initialState),
+                PackedBoard.boatsFromPlacement(targetPlacement), PackedBoard.placementMask(targetPlacement));
+    }
+
+    private String search(String initialState, String targetPlacement, Metric metric) {
+        long start = PackedBoard.fromBoardString(initialState);
+        long target = PackedBoard.boatsFromPlacement(targetPlacement);
+        long mask = PackedBoard.placementMask(targetPlacement);
+        nodes = 0;
+        generated = 0;
+        if (PackedBoard.isSolved(start, target, mask))
+            return "";
+        if (Reachability.isHopeless(start, target, mask))
+            return "";
+        visited.clear();
+        visited.add(start, 0);
+        states[0] = start;
+        skipped[0] = 0;
+        if (metric == null)
+            return solveLayers(target, mask);
+        return metric == Metric.TILE_GRABS ? solveGrabs(target, mask) : solveTurns(target, mask);
+    }
+
+    /**
+     * The breadth-first search over quarter-turns, taking commuting
+     * rotations in one order.
+     */
+    private String solveLayers(long target, long mask) {
+        int tail = 1;
+        int layerStart = 0;
+        int layerEnd = 1;
+        int depth = 0;
+        Events.Layer layer = new Events.Layer();
+        layer.begin();
+        for (int head = 0; head < tail; head++) {
+            if (head == layerEnd) {
+                layer = endLayer(layer, depth++, layerEnd - layerStart);
+                layerStart = layerEnd;
+                layerEnd = tail;
+            }
+            long state = states[head];
+            nodes++;
+            int rotatable = PackedBoard.rotatableMask(state) & ~skipped[head];
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = PackedBoard.rotate(state, p);
+                generated++;
+                if (!visited.add(next, tail)) {
+                    // reached again in the next layer: allow its moves too
+                    int i = visited.get(next);
+                    if (i >= layerEnd)
+                        skipped[i] &= COMMUTING_BELOW[p];
+                    continue;
+                }
+                if (tail == states.length)
+                    grow();
+                states[tail] = next;
+                parents[tail] = head;
+                moves[tail] = (byte) p;
+                skipped[tail] = COMMUTING_BELOW[p];
+                if (PackedBoard.isSolved(next, target, mask))
+                    return path(tail);
+                tail++;
+            }
+        }
+        Reachability.recordComponent(states, tail);
+        return "";
+    }
+
+    /**
+     * Record the expansion of a layer as a flight recorder event, and begin
+     * the event for the next.
+     *
+     * @param states the number of states expanded at the depth
+     */
+    private static Events.Layer endLayer(Events.Layer layer, int depth, int states) {
+        if (layer.shouldCommit()) {
+            layer.algorithm = "BFS";
+            layer.depth = depth;
+            layer.states = states;
+            layer.commit();
+        }
+        Events.Layer next = new Events.Layer();
+        next.begin();
+        return next;
+    }
+
+    /**
+     * A breadth-first search over macro moves. As well as the tiles that
+     * commute with the last one grabbed, the last tile itself is skipped,
+     * since two grabs of the same tile in a row could be one.
+     * <p>
+     * Only the first quarter-turn of a grab needs checking: the tile's
+     * neighbours do not move, and the boat that let it turn turns with it,
+     * so a tile that can rotate once can rotate again.
+     */
+    private String solveGrabs(long target, long mask) {
+        int tail = 1;
+        int layerEnd = 1;
+        for (int head = 0; head < tail; head++) {
+            if (head == layerEnd)
+                layerEnd = tail;
+            long state = states[head];
+            nodes++;
+            int rotatable = PackedBoard.rotatableMask(state) & ~skipped[head];
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = state;
+                for (int turns = 1; turns <= 3; turns++) {
+                    next = PackedBoard.rotate(next, p);
+                    generated++;
+                    if (!visited.add(next, tail)) {
+                        int i = visited.get(next);
+                        if (i >= layerEnd)
+                            skipped[i] &= COMMUTING_BELOW[p] | 1 << p;
+                        continue;
+                    }
+                    if (tail == states.length)
+                        grow();
+                    states[tail] = next;
+                    parents[tail] = head;
+                    moves[tail] = (byte) (p + 16 * (turns - 1));
+                    skipped[tail] = (short) (COMMUTING_BELOW[p] | 1 << p);
+                    if (PackedBoard.isSolved(next, target, mask))
+                        return path(tail);
+                    tail++;
+                }
+            }
+        }
+        Reachability.recordComponent(states, tail);
+        return "";
+    }
+
+    /**
+     * Dijkstra's algorithm over macro moves, costing each by its
+     * quarter-turns. Costs are 1-3, so a queue per cost modulo 4 orders the
+     * states (Dial's algorithm). A state found again at a lower cost is
+     * queued again, and its stale entry skipped. Only grabs of the tile last
+     * grabbed are skipped: a state reached with a cheaper path keeps its
+     * first parent's move, so commuting moves cannot be pruned safely. As in
+     * {@link #solveGrabs}, only the first quarter-turn of a grab is checked.
+     */
+    private String solveTurns(long target, long mask) {
+        int tail = 1;
+        costs[0] = 0;
+        Arrays.fill(bucketSizes, 0);
+        push(0, 0);
+        int queued = 1;
+        for (int cost = 0; queued > 0; cost++) {
+            int b = cost & 3;
+            // the bucket is not added to while it is drained: moves cost 1-3
+            for (int k = 0; k < bucketSizes[b]; k++) {
+                int head = buckets[b][k];
+                if (costs[head] != cost)
+                    continue;
+                long state = states[head];
+                if (PackedBoard.isSolved(state, target, mask))
+                    return path(head);
+                nodes++;
+                int last = head == 0 ? 0 : 1 << (moves[head] & 15);
+                int rotatable = PackedBoard.rotatableMask(state) & ~last;
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    if ((rotatable >> p & 1) == 0)
+                        continue;
+                    long next = state;
+                    for (int turns = 1; turns <= 3; turns++) {
+                        next = PackedBoard.rotate(next, p);
+                        generated++;
+                        int i = visited.get(next);
+                        if (i == StateSet.NOT_FOUND) {
+                            if (tail == states.length)
+                                grow();
+                            i = tail++;
+                            visited.add(next, i);
+                            states[i] = next;
+                        } else if (costs[i] <= cost + turns) {
+                            continue;
+                        }
+                        costs[i] = cost + turns;
+                        parents[i] = head;
+                        moves[i] = (byte) (p + 16 * (turns - 1));
+                        push(i, cost + turns);
+                        queued++;
+                    }
+                }
+            }
+            queued -= bucketSizes[b];
+            bucketSizes[b] = 0;
+        }
+        Reachability.recordComponent(states, tail);
+        return "";
+    }
+
+    private void push(int index, int cost) {
+        int b = cost & 3;
+        if (bucketSizes[b] == buckets[b].length)
+            buckets[b] = Arrays.copyOf(buckets[b], bucketSizes[b] * 2);
+        buckets[b][bucketSizes[b]++] = index;
+    }
+
+    /**
+     * @return the number of states expanded by the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return the number of successor states generated by the last search
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    private String path(int index) {
+        char[] path = new char[64];
+        int length = 0;
+        for (int i = index; i != 0; i = parents[i]) {
+            for (int turns = (moves[i] >> 4) + 1; turns > 0; turns--) {
+                if (length == path.length)
+                    path = Arrays.copyOf(path, length * 2);
+                path[length++] = (char) ('0' + (moves[i] & 15));
+            }
+        }
+        for (int i = 0, j = length - 1; i < j; i++, j--) {
+            char c = path[i];
+            path[i] = path[j];
+            path[j] = c;
+        }
+        return new String(path, 0, length);
+    }
+
+    private void grow() {
+        int capacity = states.length * 2;
+        states = Arrays.copyOf(states, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        moves = Arrays.copyOf(moves, capacity);
+        skipped = Arrays.copyOf(skipped, capacity);
+        costs = Arrays.copyOf(costs, capacity);
+    }
+}
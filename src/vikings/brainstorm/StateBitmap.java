@@ -0,0 +1,377 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A compressed set of state ranks (see {@link PackedBoard#rank(long)}), for
+ * the visited set and frontiers of searches over every reachable state.
+ * <p>
+ * As in a Roaring bitmap, ranks are split into their high bits, a key, and
+ * their low 16 bits. Each key with any ranks has a container of its low
+ * bits: a sorted array while it holds at most 4096 ranks, and a 65536-bit
+ * bitmap once it holds more. Each container takes at most 8 KB, and sparse
+ * ones take two bytes per rank. The states reachable from an objective
+ * differ mostly in tile orientations, which are the low bits of their
+ * ranks, so they cluster into few, dense containers: a few bits per state,
+ * against 16 or more for an open-addressing table of longs.
+ * <p>
+ * Not thread-safe.
+ */
+public class StateBitmap {
+    /* the most ranks an array container holds */
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    /* the keys with containers, in ascending order, with each container
+       (a char[] array or a long[] bitmap) and its number of ranks */
+    private int[] keys = new int[16];
+    private Object[] containers = new Object[16];
+    private int[] cardinalities = new int[16];
+    private int size;
+    private long cardinality;
+    /* the index of the container last found, as ranks often share keys */
+    private int last;
+
+    /**
+     * @param rank a state rank
+     * @return true if the rank was added, false if it was already present
+     */
+    public boolean add(long rank) {
+        int key = (int) (rank >>> 16);
+        char low = (char) rank;
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new char[4]);
+        }
+        Object container = containers[i];
+        if (container instanceof long[]) {
+            long[] bitmap = (long[]) container;
+            long bit = 1L << low;
+            if ((bitmap[low >>> 6] & bit) != 0)
+                return false;
+            bitmap[low >>> 6] |= bit;
+        } else {
+            char[] array = (char[]) container;
+            int n = cardinalities[i];
+            int j = Arrays.binarySearch(array, 0, n, low);
+            if (j >= 0)
+                return false;
+            j = -j - 1;
+            if (n == ARRAY_MAX) {
+                long[] bitmap = toBitmap(array, n);
+                bitmap[low >>> 6] |= 1L << low;
+                containers[i] = bitmap;
+            } else {
+                if (n == array.length)
+                    containers[i] = array = Arrays.copyOf(array, Math.min(n * 2, ARRAY_MAX));
+                System.arraycopy(array, j, array, j + 1, n - j);
+                array[j] = low;
+            }
+        }
+        cardinalities[i]++;
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * @param rank a state rank
+     * @return true if the rank is present
+     */
+    public boolean contains(long rank) {
+        int i = find((int) (rank >>> 16));
+        if (i < 0)
+            return false;
+        char low = (char) rank;
+        Object container = containers[i];
+        if (container instanceof long[])
+            return (((long[]) container)[low >>> 6] & 1L << low) != 0;
+        return Arrays.binarySearch((char[]) container, 0, cardinalities[i], low) >= 0;
+    }
+
+    /**
+     * @return the number of ranks present
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(containers, 0, size, null);
+        size = 0;
+        cardinality = 0;
+    }
+
+    /**
+     * Add every rank of another bitmap to this one, in one pass over the
+     * keys of both.
+     */
+    public void or(StateBitmap other) {
+        int capacity = Math.max(16, size + other.size);
+        int[] newKeys = new int[capacity];
+        Object[] newContainers = new Object[capacity];
+        int[] newCardinalities = new int[capacity];
+        int n = 0;
+        int i = 0, k = 0;
+        while (i < size || k < other.size) {
+            if (k == other.size || (i < size && keys[i] < other.keys[k])) {
+                newKeys[n] = keys[i];
+                newContainers[n] = containers[i];
+                newCardinalities[n++] = cardinalities[i++];
+                continue;
+            }
+            Object theirs = other.containers[k];
+            int theirCardinality = other.cardinalities[k];
+            if (i == size || other.keys[k] < keys[i]) {
+                newKeys[n] = other.keys[k];
+                newContainers[n] = theirs instanceof long[] ? ((long[]) theirs).clone()
+                        : Arrays.copyOf((char[]) theirs, Math.max(theirCardinality, 4));
+                newCardinalities[n++] = theirCardinality;
+                cardinality += theirCardinality;
+                k++;
+                continue;
+            }
+            if (containers[i] instanceof char[] && theirs instanceof char[]
+                    && cardinalities[i] + theirCardinality <= ARRAY_MAX) {
+                mergeArrays(i, (char[]) theirs, theirCardinality);
+            } else {
+                long[] bitmap = containers[i] instanceof long[] ? (long[]) containers[i]
+                        : toBitmap((char[]) containers[i], cardinalities[i]);
+                if (theirs instanceof long[]) {
+                    long[] words = (long[]) theirs;
+                    for (int w = 0; w < BITMAP_WORDS; w++)
+                        bitmap[w] |= words[w];
+                } else {
+                    char[] array = (char[]) theirs;
+                    for (int j = 0; j < theirCardinality; j++)
+                        bitmap[array[j] >>> 6] |= 1L << array[j];
+                }
+                setBitmap(i, bitmap);
+            }
+            newKeys[n] = keys[i];
+            newContainers[n] = containers[i];
+            newCardinalities[n++] = cardinalities[i];
+            i++;
+            k++;
+        }
+        keys = newKeys;
+        containers = newContainers;
+        cardinalities = newCardinalities;
+        size = n;
+        last = 0;
+    }
+
+    /**
+     * Remove every rank of another bitmap from this one.
+     */
+    public void andNot(StateBitmap other) {
+        int kept = 0;
+        for (int i = 0, k = 0; i < size; i++) {
+            while (k < other.size && other.keys[k] < keys[i])
+                k++;
+            if (k < other.size && other.keys[k] == keys[i]) {
+                Object theirs = other.containers[k];
+                if (containers[i] instanceof long[]) {
+                    long[] bitmap = (long[]) containers[i];
+                    if (theirs instanceof long[]) {
+                        long[] words = (long[]) theirs;
+                        for (int w = 0; w < BITMAP_WORDS; w++)
+                            bitmap[w] &= ~words[w];
+                    } else {
+                        char[] array = (char[]) theirs;
+                        for (int j = 0; j < other.cardinalities[k]; j++)
+                            bitmap[array[j] >>> 6] &= ~(1L << array[j]);
+                    }
+                    setBitmap(i, bitmap);
+                } else {
+                    char[] array = (char[]) containers[i];
+                    int n = 0;
+                    for (int j = 0; j < cardinalities[i]; j++) {
+                        if (!containsLow(theirs, other.cardinalities[k], array[j]))
+                            array[n++] = array[j];
+                    }
+                    cardinality -= cardinalities[i] - n;
+                    cardinalities[i] = n;
+                }
+            }
+            if (cardinalities[i] > 0) {
+                keys[kept] = keys[i];
+                containers[kept] = containers[i];
+                cardinalities[kept] = cardinalities[i];
+                kept++;
+            }
+        }
+        Arrays.fill(containers, kept, size, null);
+        size = kept;
+    }
+
+    /**
+     * Pass every rank to an action, in ascending order.
+     */
+    public void forEach(LongConsumer action) {
+        for (int i = 0; i < size; i++) {
+            long high = (long) keys[i] << 16;
+            Object container = containers[i];
+            if (container instanceof long[]) {
+                long[] bitmap = (long[]) container;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    for (long word = bitmap[w]; word != 0; word &= word - 1)
+                        action.accept(high | w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            } else {
+                char[] array = (char[]) container;
+                for (int j = 0; j < cardinalities[i]; j++)
+                    action.accept(high | array[j]);
+            }
+        }
+    }
+
+    /**
+     * @return the approximate number of bytes of heap used
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + 4L * keys.length + 8L * containers.length + 4L * cardinalities.length;
+        for (int i = 0; i < size; i++) {
+            Object container = containers[i];
+            bytes += 16 + (container instanceof long[] ? 8L * BITMAP_WORDS : 2L * ((char[]) container).length);
+        }
+        return bytes;
+    }
+
+    /**
+     * Find every state reachable from a board, one breadth-first layer at a
+     * time. The new states of each layer are sorted before they are added
+     * to its frontier, so that containers are only ever appended to.
+     *
+     * @param boardString a valid board string
+     * @return the ranks of the reachable states, including the board itself
+     */
+    public static StateBitmap reachable(String boardString) {
+        long start = PackedBoard.fromBoardString(boardString);
+        long types = start & PackedBoard.TYPE_MASK;
+        StateBitmap visited = new StateBitmap();
+        StateBitmap frontier = new StateBitmap();
+        StateBitmap next = new StateBitmap();
+        visited.add(PackedBoard.rank(start));
+        frontier.add(PackedBoard.rank(start));
+        long[][] found = {new long[1 << 10]};
+        int[] count = new int[1];
+        while (!frontier.isEmpty()) {
+            count[0] = 0;
+            frontier.forEach(rank -> {
+                long state = PackedBoard.unrank(rank, types);
+                int rotatable = PackedBoard.rotatableMask(state);
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    if ((rotatable >> p & 1) == 0)
+                        continue;
+                    long successor = PackedBoard.rank(PackedBoard.rotate(state, p));
+                    if (visited.contains(successor))
+                        continue;
+                    if (count[0] == found[0].length)
+                        found[0] = Arrays.copyOf(found[0], count[0] * 2);
+                    found[0][count[0]++] = successor;
+                }
+            });
+            Arrays.sort(found[0], 0, count[0]);
+            next.clear();
+            for (int i = 0; i < count[0]; i++)
+                next.add(found[0][i]);
+            visited.or(next);
+            StateBitmap t = frontier;
+            frontier = next;
+            next = t;
+        }
+        return visited;
+    }
+
+    private int find(int key) {
+        if (last < size && keys[last] == key)
+            return last;
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0)
+            last = i;
+        return i;
+    }
+
+    private void insert(int i, int key, Object container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+            cardinalities = Arrays.copyOf(cardinalities, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(containers, i, containers, i + 1, size - i);
+        System.arraycopy(cardinalities, i, cardinalities, i + 1, size - i);
+        keys[i] = key;
+        containers[i] = container;
+        cardinalities[i] = 0;
+        size++;
+    }
+
+    /**
+     * Replace a container with a bitmap, counting its ranks, and convert it
+     * back to an array if it has become sparse.
+     */
+    private void setBitmap(int i, long[] bitmap) {
+        int n = 0;
+        for (long word : bitmap)
+            n += Long.bitCount(word);
+        cardinality += n - cardinalities[i];
+        cardinalities[i] = n;
+        if (n > ARRAY_MAX) {
+            containers[i] = bitmap;
+            return;
+        }
+        char[] array = new char[Math.max(n, 4)];
+        int j = 0;
+        for (int w = 0; w < BITMAP_WORDS; w++) {
+            for (long word = bitmap[w]; word != 0; word &= word - 1)
+                array[j++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+        }
+        containers[i] = array;
+    }
+
+    /**
+     * Merge a sorted array of low bits into an array container, when the
+     * two together hold at most ARRAY_MAX ranks.
+     */
+    private void mergeArrays(int i, char[] theirs, int theirCardinality) {
+        char[] ours = (char[]) containers[i];
+        int ourCardinality = cardinalities[i];
+        char[] merged = new char[Math.max(ourCardinality + theirCardinality, 4)];
+        int n = 0, a = 0, b = 0;
+        while (a < ourCardinality && b < theirCardinality) {
+            char x = ours[a], y = theirs[b];
+            merged[n++] = x <= y ? x : y;
+            if (x <= y)
+                a++;
+            if (y <= x)
+                b++;
+        }
+        while (a < ourCardinality)
+            merged[n++] = ours[a++];
+        while (b < theirCardinality)
+            merged[n++] = theirs[b++];
+        containers[i] = merged;
+        cardinality += n - ourCardinality;
+        cardinalities[i] = n;
+    }
+
+    private static long[] toBitmap(char[] array, int n) {
+        long[] bitmap = new long[BITMAP_WORDS];
+        for (int j = 0; j < n; j++)
+            bitmap[array[j] >>> 6] |= 1L << array[j];
+        return bitmap;
+    }
+
+    private static boolean containsLow(Object container, int n, char low) {
+        if (container instanceof long[])
+            return (((long[]) container)[low >>> 6] & 1L << low) != 0;
+        return Arrays.binarySearch((char[]) container, 0, n, low) >= 0;
+    }
+}
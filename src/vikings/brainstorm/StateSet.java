@@ -0,0 +1,101 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash table of packed board states, mapping each state
+ * to an int. Packed states are never 0 (every board has at least one boat,
+ * and absent boats are all ones), so 0 marks an empty slot.
+ */
+class StateSet {
+    static final int NOT_FOUND = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    StateSet() {
+        this(1 << 12);
+    }
+
+    /**
+     * @param expected the number of states expected to be stored
+     */
+    StateSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int slot(long state, int mask) {
+        long h = state * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Add a state if it is not already present.
+     *
+     * @param state a packed board state
+     * @param value the value to store with a new state
+     * @return true if the state was added, false if it was already present
+     */
+    boolean add(long state, int value) {
+        int i = slot(state, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == state)
+                return false;
+            i = (i + 1) & mask;
+        }
+        keys[i] = state;
+        values[i] = value;
+        if (++size * 2 > keys.length)
+            grow();
+        return true;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the value stored with the state, or NOT_FOUND
+     */
+    int get(long state) {
+        int i = slot(state, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == state)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    boolean contains(long state) {
+        return get(state) != NOT_FOUND;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (keys[i] != 0)
+                    i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
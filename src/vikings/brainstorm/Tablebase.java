@@ -0,0 +1,299 @@
+package vikings.brainstorm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The exact number of rotations needed to solve an objective from every
+ * state reachable from its initial state, so that hints are lookups rather
+ * than searches.
+ * <p>
+ * A tablebase is built by retrograde analysis: every state reachable from
+ * the initial state is enumerated, then a breadth-first search runs
+ * backwards from all the solved states among them at once. Each rotation
+ * is undone by three more of the same tile, and a tile that can rotate
+ * once can rotate again, so the predecessors of a state are the states
+ * three rotations of each rotatable tile away.
+ * <p>
+ * The file (or buffer) has a header of six longs ({@link #MAGIC}, the
+ * version and distance width, the number of states, the target boat word
+ * and mask, and the largest distance), the reachable states in ascending
+ * order, and then their distances packed at the width in bits (4 to 8)
+ * into longs. A state is found by binary search, so a lookup touches
+ * around 20 keys. An unsolvable objective has an empty tablebase.
+ * <p>
+ * {@link #open(Path)} memory-maps a file, so opening is immediate and the
+ * operating system shares the pages between processes. A tablebase is
+ * immutable and can be used from many threads.
+ */
+public class Tablebase {
+    public static final long MAGIC = 0x564B_5442_0000_0000L; // "VKTB"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 6 * Long.BYTES;
+    private static final int MIN_WIDTH = 4;
+
+    private final ByteBuffer buffer;
+    private final int width;
+    private final int size;
+    private final long target;
+    private final long mask;
+    private final int maxDistance;
+    private final int distancesOffset;
+
+    private Tablebase(ByteBuffer buffer) {
+        this.buffer = buffer;
+        width = (int) buffer.getLong(Long.BYTES) & 0xFF;
+        size = (int) buffer.getLong(2 * Long.BYTES);
+        target = buffer.getLong(3 * Long.BYTES);
+        mask = buffer.getLong(4 * Long.BYTES);
+        maxDistance = (int) buffer.getLong(5 * Long.BYTES);
+        distancesOffset = HEADER_SIZE + size * Long.BYTES;
+    }
+
+    /**
+     * @param objective an objective for the Vikings game
+     * @return the tablebase of the objective, built in memory
+     */
+    public static Tablebase build(Objective objective) {
+        return build(objective.getInitialState(), objective.getTargetPlacement());
+    }
+
+    /**
+     * @param initialState    a valid board string
+     * @param targetPlacement the target placement of the boats
+     * @return the tablebase of the states reachable from the initial state,
+     * built in memory
+     */
+    public static Tablebase build(String initialState, String targetPlacement) {
+        long target = PackedBoard.boatsFromPlacement(targetPlacement);
+        long mask = PackedBoard.placementMask(targetPlacement);
+
+        // enumerate the reachable states
+        long[] states = new long[1 << 12];
+        StateSet index = new StateSet();
+        states[0] = PackedBoard.fromBoardString(initialState);
+        index.add(states[0], 0);
+        int n = 1;
+        for (int head = 0; head < n; head++) {
+            long state = states[head];
+            int rotatable = PackedBoard.rotatableMask(state);
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long next = PackedBoard.rotate(state, p);
+                if (!index.add(next, n))
+                    continue;
+                if (n == states.length)
+                    states = Arrays.copyOf(states, n * 2);
+                states[n++] = next;
+            }
+        }
+
+        // search backwards from the solved states, in the order found
+        int[] distances = new int[n];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[n];
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (PackedBoard.isSolved(states[i], target, mask)) {
+                distances[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        if (tail == 0)
+            return new Tablebase(encode(new long[0], new int[0], 0, target, mask, 0));
+        for (int head = 0; head < tail; head++) {
+            int i = queue[head];
+            long state = states[i];
+            int rotatable = PackedBoard.rotatableMask(state);
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                if ((rotatable >> p & 1) == 0)
+                    continue;
+                long previous = PackedBoard.rotate(PackedBoard.rotate(PackedBoard.rotate(state, p), p), p);
+                int j = index.get(previous);
+                if (distances[j] < 0) {
+                    distances[j] = distances[i] + 1;
+                    queue[tail++] = j;
+                }
+            }
+        }
+        // every rotation can be undone, so every reachable state was reached
+        int maxDistance = distances[queue[tail - 1]];
+
+        long[] sorted = Arrays.copyOf(states, n);
+        Arrays.sort(sorted);
+        int[] sortedDistances = new int[n];
+        for (int i = 0; i < n; i++)
+            sortedDistances[i] = distances[index.get(sorted[i])];
+        int width = Math.max(MIN_WIDTH, 32 - Integer.numberOfLeadingZeros(maxDistance));
+        return new Tablebase(encode(sorted, sortedDistances, width, target, mask, maxDistance));
+    }
+
+    private static ByteBuffer encode(long[] states, int[] distances, int width, long target, long mask,
+                                     int maxDistance) {
+        int n = states.length;
+        int words = (int) (((long) n * width + 63) / 64);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (n + words) * Long.BYTES);
+        buffer.putLong(MAGIC).putLong((long) VERSION << 8 | width).putLong(n)
+                .putLong(target).putLong(mask).putLong(maxDistance);
+        for (long state : states)
+            buffer.putLong(state);
+        long[] packed = new long[words];
+        for (int i = 0; i < n; i++) {
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int offset = (int) bit & 63;
+            packed[word] |= (long) distances[i] << offset;
+            if (offset + width > 64)
+                packed[word + 1] |= (long) distances[i] >>> (64 - offset);
+        }
+        for (long word : packed)
+            buffer.putLong(word);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Write the tablebase to a file, replacing any existing file.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer contents = buffer.duplicate();
+            contents.clear();
+            while (contents.hasRemaining())
+                channel.write(contents);
+        }
+    }
+
+    /**
+     * Open a tablebase file. The file is memory-mapped rather than read.
+     *
+     * @param file the tablebase file
+     * @return the tablebase
+     * @throws IOException if the file cannot be read or is not a tablebase
+     */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getLong(0) != MAGIC)
+                throw new IOException("Not a tablebase: " + file);
+            int version = (int) (buffer.getLong(Long.BYTES) >>> 8);
+            if (version != VERSION)
+                throw new IOException("Unsupported tablebase version " + version + ": " + file);
+            Tablebase tablebase = new Tablebase(buffer);
+            long words = ((long) tablebase.size * tablebase.width + 63) / 64;
+            if (buffer.capacity() != HEADER_SIZE + (tablebase.size + words) * Long.BYTES)
+                throw new IOException("Truncated tablebase: " + file);
+            return tablebase;
+        }
+    }
+
+    /**
+     * @return the number of states in the tablebase
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the largest number of rotations needed from any state
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return true if the state solves the tablebase's objective
+     */
+    public boolean isSolved(long state) {
+        return PackedBoard.isSolved(state, target, mask);
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the fewest rotations that solve the objective from the state,
+     * or -1 if the state is not in the tablebase
+     */
+    public int distance(long state) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long key = buffer.getLong(HEADER_SIZE + middle * Long.BYTES);
+            if (key < state)
+                low = middle + 1;
+            else if (key > state)
+                high = middle - 1;
+            else
+                return distanceAt(middle);
+        }
+        return -1;
+    }
+
+    private int distanceAt(int i) {
+        long bit = (long) i * width;
+        int word = (int) (bit >>> 6);
+        int offset = (int) bit & 63;
+        long value = buffer.getLong(distancesOffset + word * Long.BYTES) >>> offset;
+        if (offset + width > 64)
+            value |= buffer.getLong(distancesOffset + (word + 1) * Long.BYTES) << (64 - offset);
+        return (int) value & ((1 << width) - 1);
+    }
+
+    /**
+     * @param boardString a valid board string
+     * @return the fewest rotations that solve the objective from the board,
+     * or -1 if it is not in the tablebase
+     */
+    public int distance(String boardString) {
+        return distance(PackedBoard.fromBoardString(boardString));
+    }
+
+    /**
+     * @param boardString a valid board string
+     * @param rotations   a number of rotations
+     * @return true if the objective can be solved from the board in at most
+     * that many rotations
+     */
+    public boolean isSolvableWithin(String boardString, int rotations) {
+        int distance = distance(boardString);
+        return distance >= 0 && distance <= rotations;
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the position of a tile whose rotation begins a shortest
+     * solution from the state, or -1 if the state is solved or not in the
+     * tablebase
+     */
+    public int bestMove(long state) {
+        int distance = distance(state);
+        if (distance <= 0)
+            return -1;
+        int rotatable = PackedBoard.rotatableMask(state);
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            if ((rotatable >> p & 1) != 0 && distance(PackedBoard.rotate(state, p)) == distance - 1)
+                return p;
+        }
+        throw new IllegalStateException("Inconsistent tablebase at " + PackedBoard.toBoardString(state));
+    }
+
+    /**
+     * @param boardString a valid board string
+     * @return the position of a tile whose rotation begins a shortest
+     * solution from the board, or -1 if it is solved or not in the tablebase
+     */
+    public int bestMove(String boardString) {
+        return bestMove(PackedBoard.fromBoardString(boardString));
+    }
+}
@@ -0,0 +1,152 @@
+package vikings.brainstorm;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size table of what depth-first searches have learned about
+ * states: the shortest distance from the start at which a state has been
+ * reached (g), and a lower bound on the rotations needed from it to reach
+ * the target.
+ * <p>
+ * The table has a power-of-two number of slots, each two longs: the data
+ * word (g and bound), and the key XORed with the data. Both are written
+ * with plain stores and no locks. A reader recomputes the key from the two
+ * words, so a slot torn by concurrent writers reads as a different key and
+ * is ignored, and many threads can share one table. When two states hash
+ * to the same slot, the one with the larger bound (the deeper search) is
+ * kept.
+ * <p>
+ * Bounds depend on the target, so a table should only be shared by
+ * searches for the same target; {@link #clear()} it for another.
+ */
+public class TranspositionTable {
+    /**
+     * Returned by {@link #probe(long)} for a state not in the table
+     */
+    public static final long MISS = -1;
+
+    private static final int FIELD_BITS = 16;
+    private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int shift;
+
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * @param log2Slots the base-2 logarithm of the number of slots; the
+     *                  table takes 16 bytes per slot
+     */
+    public TranspositionTable(int log2Slots) {
+        if (log2Slots < 1 || log2Slots > 30)
+            throw new IllegalArgumentException("Bad table size 2^" + log2Slots);
+        keys = new long[1 << log2Slots];
+        data = new long[1 << log2Slots];
+        shift = 64 - log2Slots;
+    }
+
+    private int slot(long state) {
+        return (int) (state * 0x9E3779B97F4A7C15L >>> shift);
+    }
+
+    /**
+     * @param state a packed board state
+     * @return the data stored for the state (see {@link #g(long)} and
+     * {@link #bound(long)}), or MISS
+     */
+    public long probe(long state) {
+        int i = slot(state);
+        long d = data[i];
+        long k = keys[i];
+        probes.increment();
+        if ((k ^ d) == state && d != 0) {
+            hits.increment();
+            return d;
+        }
+        if (d != 0)
+            collisions.increment();
+        return MISS;
+    }
+
+    /**
+     * Record a distance and bound for a state, keeping the smaller distance
+     * and larger bound if the state is already present. Another state in the
+     * same slot is replaced unless its bound is larger.
+     *
+     * @param state a packed board state
+     * @param g     a distance from the start at which the state was reached
+     * @param bound a lower bound on the rotations needed from the state
+     */
+    public void store(long state, int g, int bound) {
+        int i = slot(state);
+        long d = data[i];
+        if ((keys[i] ^ d) == state && d != 0) {
+            g = Math.min(g, g(d));
+            bound = Math.max(bound, bound(d));
+        } else if (d != 0 && bound(d) > bound) {
+            return;
+        }
+        long stored = (long) Math.min(bound, FIELD_MASK) << FIELD_BITS | Math.min(g, FIELD_MASK - 1) + 1;
+        data[i] = stored;
+        keys[i] = state ^ stored;
+    }
+
+    /**
+     * @param data data returned by {@link #probe(long)}
+     * @return the shortest distance from the start at which the state has been reached
+     */
+    public static int g(long data) {
+        return (int) (data & FIELD_MASK) - 1;
+    }
+
+    /**
+     * @param data data returned by {@link #probe(long)}
+     * @return a lower bound on the rotations needed from the state
+     */
+    public static int bound(long data) {
+        return (int) (data >>> FIELD_BITS) & FIELD_MASK;
+    }
+
+    /**
+     * Empty the table, and reset its statistics. Not safe while other
+     * threads are using the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        probes.reset();
+        hits.reset();
+        collisions.reset();
+    }
+
+    /**
+     * @return the number of slots
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    /**
+     * @return the fraction of probes that found their state
+     */
+    public double getHitRate() {
+        long n = probes.sum();
+        return n == 0 ? 0 : (double) hits.sum() / n;
+    }
+
+    /**
+     * @return the fraction of probes that found another state in the slot
+     */
+    public double getCollisionRate() {
+        long n = probes.sum();
+        return n == 0 ? 0 : (double) collisions.sum() / n;
+    }
+}
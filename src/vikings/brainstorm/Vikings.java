@@ -95,7 +95,7 @@ public class Vikings {
      * @return true if boardString is well-formed, false if boardString is not well-formed.
      */
     public static boolean isBoardStringWellFormed(String boardString) {
-        if (boardString.length()<20)
+        if (boardString.length()<20||boardString.length()%2!=0)
             return false;
         int countO = 0;
         int countN = 0;
@@ -114,16 +114,16 @@ public class Vikings {
             if (type.charAt(i)=='N')
                 countN++; }
         for (int i=0;i<rotation.length();i++){
-            if (rotation.charAt(i)>'3')
+            if (rotation.charAt(i)<'0'||rotation.charAt(i)>'3')
                 countRotation++; }
         for (int i=0;i<position.length();i++){
-            if (rotation.charAt(i)>'x')
+            if (position.charAt(i)<'a'||position.charAt(i)>'x')
                 countPosition++;}
         for (int i=0;i<color.length();i++){
             if (color.charAt(i)!='B'&&color.charAt(i)!='G'&&color.charAt(i)!='R'&&color.charAt(i)!='Y')
                 countColor++;}
         if (countN==6&&countO==3&&countRotation==0&&countPosition==0&&countColor==0&&
-                !repeat(boats)&&sortColor(color).equals(color))
+                !repeat(color)&&sortColor(color).equals(color))
             return true;
         else return false;
     }
@@ -228,10 +228,10 @@ public class Vikings {
      * @return True if valid, false if invalid.
      */
     public static boolean isBoardStringValid(String boardString) {
-        String boats = boardString.substring(18);
-        String boatPos = getEven(boats);
-        char[] boatP = boatPos.toCharArray();
         if (isBoardStringWellFormed(boardString)){
+            String boats = boardString.substring(18);
+            String boatPos = getEven(boats);
+            char[] boatP = boatPos.toCharArray();
             for (int a=0;a<boatPos.length();a++){
                 for (int b=a+1;b<boatPos.length();b++){
                     if (boatP[a]==boatP[b])
@@ -275,7 +275,7 @@ public class Vikings {
         int tile2D = Integer.parseInt(boardString.substring(2*position2+1,2*position2+2));
         String tile1T = boardString.substring(2*position1,2*position1+1);
         String tile2T = boardString.substring(2*position2,2*position2+1);
-        if (position2-position1==1){
+        if ((position2-position1==1)&&(position1!=2)&&(position1!=5)){
             if (tile1T.equals("O")&&tile2T.equals("O")){
                 return (((tile1D==0||tile1D==2)&&(tile2D==1||tile2D==3))||((tile1D==1||tile1D==3)&&(tile2D==0||tile2D==2)));}
             if (tile1T.equals("N")&&tile2T.equals("N")){
@@ -308,16 +308,7 @@ public class Vikings {
      * @return True if tile can be rotated, otherwise return false (tile can't be rotated)
      */
     public static boolean canRotateTile(String boardString, int position) {
-        String tiles = boardString.substring(0,18);
-        String boats = boardString.substring(18);
-        String tileType = getEven(tiles);
-        String tilePos = getOdd(tiles);
-        String boatPos = getEven(boats);
-        int amount = boatPos.length();
-        char[] tilePositions = tilePos.toCharArray();
-        char[] tileTypes = tileType.toCharArray();
-        char[] boatPositions = boatPos.toCharArray();
-        return true;
+        return PackedBoard.canRotate(PackedBoard.fromBoardString(boardString), position);
     }
 
     public static void main(String[] args) {
@@ -334,7 +325,7 @@ public class Vikings {
      * @return An updated boardString that reflects the rotation
      */
     public static String rotateTile(String boardString, int pos) {
-        return "";
+        return PackedBoard.toBoardString(PackedBoard.rotate(PackedBoard.fromBoardString(boardString), pos));
     }
 
     /**
@@ -350,7 +341,7 @@ public class Vikings {
      * @return a String representing the sequence of rotations to solve the objective,
      * or an empty String if no solution exists
      */
-    public static String findSolution(comp1110.ass1.Objective objective) {
-        return "";
+    public static String findSolution(Objective objective) {
+        return new Solver().solve(objective);
     }
 }
@@ -1,11 +1,11 @@
 package vikings.brainstorm.gui;
 
 import comp1110.ass1.*;
+import javafx.animation.AnimationTimer;
 import javafx.animation.FadeTransition;
 import javafx.application.Application;
 import javafx.application.Platform;;
 import javafx.scene.Group;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -26,6 +26,17 @@ import javafx.stage.Stage;
 import javafx.util.Duration;
 import vikings.brainstorm.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
 public class Game extends Application {
     private static final int TILE_SPACING = 150;
     private static final int TILE_DIAMETER = 200;
@@ -39,8 +50,13 @@ public class Game extends Application {
     private static final int CONTROLS_HEIGHT = 50;
     private static final int GAME_WIDTH = BOARD_X + BOARD_WIDTH + MARGIN_X;
     private static final int GAME_HEIGHT = BOARD_Y + BOARD_HEIGHT + CONTROLS_HEIGHT + MARGIN_X;
-    private static final long ROTATION_THRESHOLD = 50; // Allow rotation every 50 ms
+    private static final double SCROLL_STEP = 40; // Scroll distance for one rotation (one wheel notch)
+    private static final double ROTATION_SPEED = 900; // Degrees per second for animated tile rotation
+    private static final double BOAT_EASING = 12; // Rate (per second) at which boats close on their target
     private static final String validTiles = "BGRYNO";
+    private static final String BOAT_COLOURS = "BGRY";
+    private static final long HUD_UPDATE_INTERVAL = 250_000_000; // Nanoseconds between updates of the HUD text
+    private static final int HUD_WINDOW = 64; // Number of frames, or rotations, the HUD figures are taken over
 
     /* node groups */
     private final Group root = new Group();
@@ -56,10 +72,22 @@ public class Game extends Application {
     /* where to find media assets */
     private static final String URI_BASE = "assets/";
 
+    /* names of the image assets that are decoded once and shared by every tile */
+    private static final String[] IMAGE_ASSETS = {"N", "O", "Base", "B", "G", "R", "Y"};
+
+    /* decoded images, keyed by asset name */
+    private static final Map<String, Image> images = new HashMap<>();
+
     /* Loop in public domain CC 0 http://www.freesound.org/people/oceanictrancer/sounds/211684/ */
     private static final String LOOP_URI = Game.class.getResource(URI_BASE + "211684__oceanictrancer__classic-house-loop-128-bpm.wav").toString();
     private AudioClip loop;
 
+    /* where session journals are written */
+    private static final Path JOURNAL_DIR = Paths.get(System.getProperty("user.home"), ".vikings", "sessions");
+
+    /** Records every game and move of this session */
+    private SessionRecorder recorder;
+
     /* game variables */
     private boolean loopPlaying = false;
 
@@ -83,9 +111,64 @@ public class Game extends Application {
      */
     String currentBoardString;
 
+    /*
+     * The packed form of the current state, kept with currentBoardString,
+     * whether it is valid, and the packed target placement of the objective
+     */
+    private long currentState;
+    private boolean boardValid;
+    private long targetBoats;
+    private long targetMask;
+
     /* Define a drop shadow effect that will apply to tiles */
     private static DropShadow dropShadow;
 
+    /*
+     * Rotation requests (tile positions) waiting to be applied to the game,
+     * in the order they were made. Input handlers only append to this queue;
+     * the animation timer drains it once per frame.
+     */
+    private int[] pendingRotations = new int[16];
+    /* when each pending rotation was requested, from System.nanoTime() */
+    private long[] pendingTimes = new long[16];
+    private int pendingCount = 0;
+
+    /** The performance overlay, shown and hidden with the 'H' key */
+    private final PerformanceHud hud = new PerformanceHud();
+
+    /** The single timer that applies queued rotations and animates the board */
+    private final AnimationTimer animator = new AnimationTimer() {
+        private long lastFrame = 0;
+
+        @Override
+        public void handle(long now) {
+            double elapsed = lastFrame == 0 ? 0 : (now - lastFrame) / 1e9;
+            long workStart = System.nanoTime();
+            applyPendingRotations();
+            animateBoard(elapsed);
+            if (lastFrame != 0)
+                hud.recordFrame(now - lastFrame, System.nanoTime() - workStart);
+            lastFrame = now;
+            hud.update(now);
+        }
+    };
+
+    /*
+     * Solves each new objective off the JavaFX thread, so that a slow solve
+     * never holds up a frame. The status of the latest solve is replaced
+     * as a whole, so the HUD always reads a consistent one.
+     */
+    private final ExecutorService solveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vikings-solver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<SolveStatus> solveStatus = new AtomicReference<>();
+
+    /* the nine sea tiles and four boats, created once and reconfigured for each new game */
+    private final SeaTile[] seaTilePool = new SeaTile[Tile.NUM_POSITIONS];
+    private final BoatTile[] boatTilePool = new BoatTile[BOAT_COLOURS.length()];
+
     /** Static initializer to initialize dropShadow */
     static {
         dropShadow = new DropShadow();
@@ -94,6 +177,29 @@ public class Game extends Application {
         dropShadow.setColor(Color.color(0, 0, 0, .4));
     }
 
+    /**
+     * Decode every image asset once, so that starting a new game never
+     * has to touch the classpath or decode an image.
+     */
+    private static void preloadImages() {
+        for (String name : IMAGE_ASSETS) {
+            getImage(name);
+        }
+    }
+
+    /**
+     * @param name the name of an image asset, without the ".png" suffix
+     * @return the shared, decoded image for that asset
+     */
+    private static Image getImage(String name) {
+        Image image = images.get(name);
+        if (image == null) {
+            image = new Image(Game.class.getResource(URI_BASE + name + ".png").toString());
+            images.put(name, image);
+        }
+        return image;
+    }
+
     /**
      * Graphical representations of tiles
      */
@@ -106,19 +212,36 @@ public class Game extends Application {
          * @param tile the letter representing the tile to be created.
          */
         GTile(char tile) {
+            setTile(tile);
+        }
+
+        /**
+         * Change the letter this tile represents, swapping in the shared
+         * image for that letter.
+         *
+         * @param tile the letter representing the tile
+         */
+        void setTile(char tile) {
             if (validTiles.indexOf(tile) < 0) {
                 throw new IllegalArgumentException("Bad tile: \"" + tile + "\"");
             }
             this.tile = tile;
-            setImage(new Image(Game.class.getResource(URI_BASE + tile + ".png").toString()));
+            setImage(getImage(String.valueOf(tile)));
         }
     }
 
     class SeaTile extends GTile {
         Tile tile;
 
-        // This caters for mice which send multiple scroll events per tick.
-        long lastRotationTime = System.currentTimeMillis(); // only allow rotation every ROTATION_THRESHOLD (ms)
+        /**
+         * The angle this tile is being animated towards; the displayed
+         * rotation catches up with it on each frame.
+         */
+        double targetAngle;
+
+        // High-resolution wheels send many small scroll events per notch,
+        // so scroll distance is accumulated and turned into whole rotations.
+        double scrollAccumulated = 0;
 
         /**
          * Construct a playing tile, which is placed on the board at the start of the game.
@@ -128,76 +251,129 @@ public class Game extends Application {
          */
         SeaTile(char tileType, int orientation, int position) {
             super(tileType);
-            this.tile = new Tile(TileType.fromChar(tileType), orientation, position);
-            setImage(new Image(Game.class.getResource(URI_BASE + tileType + ".png").toString()));
+            configure(tileType, orientation, position);
             setFitHeight(TILE_DIAMETER);
             setFitWidth(TILE_DIAMETER);
             setEffect(dropShadow);
-            setRotate(orientation * 90);
             int locX = position % 3;
             int locY = position / 3;
             setLayoutX(locX * TILE_SPACING);
             setLayoutY(locY * TILE_SPACING);
 
-            setOnScroll(event -> { // click to change orientation
-                rotate90(event.getSceneX(), event.getSceneY());
+            setOnScroll(event -> { // scroll to change orientation
+                scrollAccumulated += Math.abs(event.getDeltaY());
+                while (scrollAccumulated >= SCROLL_STEP) {
+                    scrollAccumulated -= SCROLL_STEP;
+                    requestRotation(event.getSceneX(), event.getSceneY());
+                }
             });
 
-            setOnMouseClicked(event -> { // scroll to change orientation
-                rotate90(event.getSceneX(), event.getSceneY());
+            setOnMouseClicked(event -> { // click to change orientation
+                requestRotation(event.getSceneX(), event.getSceneY());
             });
         }
 
+        /**
+         * Reuse this tile for a new game by changing its type and orientation.
+         *
+         * @param tileType    The letter representing the type of tile, either 'N' or 'O'
+         * @param orientation The orientation of the tile, 0-3
+         * @param position    The position of the tile on the board, 0-8
+         */
+        void configure(char tileType, int orientation, int position) {
+            if (tileType != super.tile) {
+                setTile(tileType);
+            }
+            this.tile = new Tile(TileType.fromChar(tileType), orientation, position);
+            targetAngle = orientation * 90;
+            setRotate(targetAngle);
+            setOpacity(1.0);
+            scrollAccumulated = 0;
+        }
+
         /**
          * If the mouse is within half the tile radius from the centre of this tile,
-         * rotate this tile 90 degrees clockwise.
+         * queue a 90 degree clockwise rotation of this tile.
          *
          * @param mouseX the x location of the mouse when rotation was attempted
          * @param mouseY the y location of the mouse when rotation was attempted
          */
-        private void rotate90(double mouseX, double mouseY) {
+        private void requestRotation(double mouseX, double mouseY) {
             int locationX = tile.getPosition() % 3;
             int locationY = tile.getPosition() / 3;
-            if (System.currentTimeMillis() - lastRotationTime > ROTATION_THRESHOLD) {
-                lastRotationTime = System.currentTimeMillis();
-                int tileCentreX = MARGIN_X + TILE_SPACING * (locationX + 1);
-                int tileCentreY = MARGIN_Y + TILE_SPACING * (locationY + 1);
-                int targetRadius = TILE_SPACING / 2;
-                double xDist = tileCentreX - mouseX;
-                double yDist = tileCentreY - mouseY;
-                if (xDist * xDist + yDist * yDist < targetRadius * targetRadius) {
-                    if (Vikings.canRotateTile(currentBoardString, tile.getPosition())) {
-                        int newOrientation = (tile.getOrientation() + 1) % 4;
-                        currentBoardString = Vikings.rotateTile(currentBoardString, tile.getPosition());
-                        System.out.print("" + tile.getPosition() + newOrientation);
-                        System.out.flush();
-                        setRotate(getRotate() + 90);
-                        tile.setOrientation(newOrientation);
-                        for (int i = Tile.NUM_POSITIONS * 2; i < currentBoardString.length(); i += 2) {
-                            char boatColourChar = currentBoardString.charAt(i);
-                            for (Node boatNode : boatTiles.getChildren()) {
-                                if (boatNode instanceof BoatTile) {
-                                    BoatTile boatTile = (BoatTile) (boatNode);
-                                    if (boatTile.tile == boatColourChar) {
-                                        char newLocation = currentBoardString.charAt(i + 1);
-                                        boatTile.moveToLocation(newLocation);
-                                    }
-                                }
-                            }
-                        }
-                    } else {
-                        // briefly fade the tile to indicate that it can't be rotated
-                        FadeTransition ft = new FadeTransition(Duration.millis(200), this);
-                        ft.setFromValue(1.0);
-                        ft.setToValue(0.1);
-                        ft.setCycleCount(2);
-                        ft.setAutoReverse(true);
-                        ft.play();
-                    }
+            int tileCentreX = MARGIN_X + TILE_SPACING * (locationX + 1);
+            int tileCentreY = MARGIN_Y + TILE_SPACING * (locationY + 1);
+            int targetRadius = TILE_SPACING / 2;
+            double xDist = tileCentreX - mouseX;
+            double yDist = tileCentreY - mouseY;
+            if (xDist * xDist + yDist * yDist < targetRadius * targetRadius) {
+                queueRotation(tile.getPosition());
+            }
+        }
 
+        /**
+         * Rotate this tile by the given number of quarter-turns clockwise in
+         * the underlying game, and start animating towards the new orientation.
+         * The boats move with the tile.
+         *
+         * @param turns the number of quarter-turns requested, 1 or more
+         * @return a flight recorder event for the rotation, begun but not
+         * committed, or null if the event is disabled
+         */
+        private Events.Rotation rotate90(int turns) {
+            Events.Rotation event = new Events.Rotation();
+            event.begin();
+            int position = tile.getPosition();
+            boolean rotated = PackedBoard.canRotate(currentState, position);
+            double startAngle = targetAngle;
+            if (rotated) {
+                for (int turn = 0; turn < turns; turn++) {
+                    int newOrientation = (tile.getOrientation() + 1) % 4;
+                    currentState = PackedBoard.rotate(currentState, position);
+                    // only the rotated tile and its boats need checking
+                    boardValid = boardValid && PackedBoard.isValidAfterRotation(currentState, position);
+                    if (recorder != null)
+                        recorder.recordMove(vikingsGame.getObjective().getProblemNumber(), position, newOrientation);
+                    tile.setOrientation(newOrientation);
+                    targetAngle += 90;
+                }
+                currentBoardString = PackedBoard.toBoardString(currentState);
+                for (int colour = 0; colour < PackedBoard.NUM_BOATS; colour++) {
+                    int edge = PackedBoard.boatEdge(currentState, colour);
+                    if (edge == PackedBoard.NO_BOAT)
+                        continue;
+                    BoatTile boatTile = boatTilePool[colour];
+                    char newLocation = (char) ('a' + edge);
+                    if (boatTile.edge != newLocation)
+                        boatTile.carry(this, startAngle, newLocation);
                 }
-                hideCompletion();
-                checkCompletion();
+            } else {
+                // briefly fade the tile to indicate that it can't be rotated
+                FadeTransition ft = new FadeTransition(Duration.millis(200), this);
+                ft.setFromValue(1.0);
+                ft.setToValue(0.1);
+                ft.setCycleCount(2);
+                ft.setAutoReverse(true);
+                ft.play();
+            }
+            if (!event.isEnabled())
+                return null;
+            event.position = tile.getPosition();
+            event.turns = turns;
+            event.rotated = rotated;
+            event.boardString = currentBoardString;
+            return event;
+        }
+
+        /**
+         * Move the displayed rotation towards the target angle.
+         *
+         * @param maxStep the largest change in angle allowed for this frame
+         */
+        void animate(double maxStep) {
+            double remaining = targetAngle - getRotate();
+            if (remaining != 0) {
+                setRotate(remaining <= maxStep ? targetAngle : getRotate() + maxStep);
             }
         }
     }
@@ -209,6 +385,23 @@ public class Game extends Application {
     class BoatTile extends GTile {
         char edge;
 
+        /* the layout position and rotation this boat is being animated towards */
+        double targetX;
+        double targetY;
+        double targetAngle;
+
+        /* the tile carrying this boat round, or null if the boat is not being
+           carried, with the tile's angle and the boat's layout position and
+           rotation when the tile began to turn, and the layout position of
+           the tile's centre */
+        SeaTile carrier;
+        double carrierStartAngle;
+        double fromX;
+        double fromY;
+        double fromAngle;
+        double pivotX;
+        double pivotY;
+
         /**
          * Construct a draggable tile
          *
@@ -224,9 +417,15 @@ public class Game extends Application {
             setFitHeight(TILE_DIAMETER * 0.62);
             setFitWidth(TILE_DIAMETER * 0.25);
 
-            moveToLocation(edge);
+            placeAtLocation(edge);
         }
 
+        /**
+         * Set the edge this boat is heading to; the boat is animated
+         * towards it on the following frames.
+         *
+         * @param edge the edge the boat has moved to ('a' - 'x')
+         */
         public void moveToLocation(char edge) {
             int orientation;
             this.edge = edge;
@@ -236,9 +435,84 @@ public class Game extends Application {
             double x = loc.getX();
             double y = loc.getY() - 0.5;
 
-            setLayoutX(x * TILE_SPACING / 2);
-            setLayoutY(y * TILE_SPACING / 2);
-            setRotate(90 * orientation);
+            targetX = x * TILE_SPACING / 2;
+            targetY = y * TILE_SPACING / 2;
+            targetAngle = 90 * orientation;
+        }
+
+        /**
+         * Place this boat directly on the given edge, without animation.
+         *
+         * @param edge the edge to place the boat on ('a' - 'x')
+         */
+        public void placeAtLocation(char edge) {
+            carrier = null;
+            moveToLocation(edge);
+            setLayoutX(targetX);
+            setLayoutY(targetY);
+            setRotate(targetAngle);
+        }
+
+        /**
+         * Move this boat to the given edge by turning with a tile: the boat
+         * follows the tile's displayed rotation round its centre, and turns
+         * with it, on the following frames.
+         *
+         * @param tile       the tile that has rotated with this boat on it
+         * @param startAngle the tile's target angle before the rotation
+         * @param edge       the edge the boat has moved to ('a' - 'x')
+         */
+        void carry(SeaTile tile, double startAngle, char edge) {
+            if (carrier != tile) {
+                if (carrier != null) {
+                    // a different tile has taken the boat on: finish the last turn
+                    setLayoutX(targetX);
+                    setLayoutY(targetY);
+                    setRotate(targetAngle);
+                }
+                carrier = tile;
+                carrierStartAngle = startAngle;
+                fromX = getLayoutX();
+                fromY = getLayoutY();
+                fromAngle = getRotate();
+                // the centre of the tile, mapped as moveToLocation maps an edge
+                int position = tile.tile.getPosition();
+                pivotX = (2 * (position % 3) + 1) * TILE_SPACING / 2.0;
+                pivotY = (2 * (position / 3) + 0.5) * TILE_SPACING / 2.0;
+            }
+            moveToLocation(edge);
+            targetAngle = fromAngle + (tile.targetAngle - carrierStartAngle);
+        }
+
+        /**
+         * Move the displayed boat towards its target: round with the tile
+         * carrying it, if there is one, and otherwise a fraction of the way.
+         *
+         * @param fraction how much of the remaining distance to cover, 0-1
+         */
+        void animate(double fraction) {
+            if (carrier != null) {
+                // the tile may still be finishing an earlier turn without this boat
+                double turned = Math.max(0, carrier.getRotate() - carrierStartAngle);
+                if (carrier.getRotate() >= carrier.targetAngle) {
+                    carrier = null;
+                    setLayoutX(targetX);
+                    setLayoutY(targetY);
+                    setRotate(targetAngle);
+                    return;
+                }
+                // setRotate turns clockwise on screen, where y points down
+                double radians = Math.toRadians(turned);
+                double cos = Math.cos(radians);
+                double sin = Math.sin(radians);
+                setLayoutX(pivotX + (fromX - pivotX) * cos - (fromY - pivotY) * sin);
+                setLayoutY(pivotY + (fromX - pivotX) * sin + (fromY - pivotY) * cos);
+                setRotate(fromAngle + turned);
+                return;
+            }
+            setLayoutX(getLayoutX() + (targetX - getLayoutX()) * fraction);
+            setLayoutY(getLayoutY() + (targetY - getLayoutY()) * fraction);
+            setRotate(getRotate() + (targetAngle - getRotate()) * fraction);
         }
 
         /**
@@ -249,6 +523,254 @@ public class Game extends Application {
         }
     }
 
+    /**
+     * The status of a background solve: running until the time taken is set.
+     */
+    private static final class SolveStatus {
+        final int objective;
+        final long start;
+        /* nanoseconds, or -1 while the solve is running */
+        final long time;
+        /* null if the objective has no solution */
+        final String solution;
+
+        SolveStatus(int objective, long start, long time, String solution) {
+            this.objective = objective;
+            this.start = start;
+            this.time = time;
+            this.solution = solution;
+        }
+    }
+
+    /**
+     * The last few durations of something, in nanoseconds, kept in a ring.
+     */
+    private static final class RollingTimes {
+        private final long[] times = new long[HUD_WINDOW];
+        private int count = 0;
+        private long last = 0;
+
+        void add(long time) {
+            times[count++ % times.length] = time;
+            last = time;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        void clear() {
+            count = 0;
+            last = 0;
+        }
+
+        double lastMillis() {
+            return last / 1e6;
+        }
+
+        double averageMillis() {
+            int n = Math.min(count, times.length);
+            long sum = 0;
+            for (int i = 0; i < n; i++)
+                sum += times[i];
+            return n == 0 ? 0 : sum / 1e6 / n;
+        }
+
+        double maxMillis() {
+            int n = Math.min(count, times.length);
+            long max = 0;
+            for (int i = 0; i < n; i++)
+                max = Math.max(max, times[i]);
+            return max / 1e6;
+        }
+    }
+
+    /**
+     * An overlay of performance figures: the frame time, the latency from a
+     * click to the update of the board, the cost of validating the board and
+     * checking completion, and the status of the background solve.
+     * <p>
+     * The figures are recorded on every frame into preallocated rings, but
+     * the text nodes, created once, are only updated a few times a second,
+     * and not at all while the overlay is hidden, so the overlay adds little
+     * to the frame time it reports.
+     */
+    class PerformanceHud extends Group {
+        private final Text[] lines = new Text[4];
+        private final RollingTimes frames = new RollingTimes();
+        private final RollingTimes work = new RollingTimes();
+        private final RollingTimes latencies = new RollingTimes();
+        private final RollingTimes validations = new RollingTimes();
+        private long lastUpdate = 0;
+
+        PerformanceHud() {
+            Rectangle background = new Rectangle(330, 16 * lines.length + 10);
+            background.setArcWidth(10.0);
+            background.setArcHeight(10.0);
+            background.setFill(Color.color(0, 0, 0, .6));
+            getChildren().add(background);
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = new Text();
+                lines[i].setFont(Font.font("Monospaced", 12));
+                lines[i].setFill(Color.WHITE);
+                lines[i].setLayoutX(8);
+                lines[i].setLayoutY(18 + 16 * i);
+                getChildren().add(lines[i]);
+            }
+            setLayoutX(8);
+            setLayoutY(8);
+            setMouseTransparent(true);
+            setVisible(false);
+        }
+
+        /**
+         * Show the overlay if it is hidden, or hide it if it is shown.
+         */
+        void toggle() {
+            setVisible(!isVisible());
+            if (isVisible()) {
+                toFront();
+                lastUpdate = 0;
+            }
+        }
+
+        /**
+         * @param interval the time since the previous frame, in nanoseconds
+         * @param work     the time spent handling this frame, in nanoseconds
+         */
+        void recordFrame(long interval, long work) {
+            frames.add(interval);
+            this.work.add(work);
+        }
+
+        /**
+         * @param latency the time from a rotation request to the update of
+         *                the game, in nanoseconds
+         */
+        void recordLatency(long latency) {
+            latencies.add(latency);
+        }
+
+        /**
+         * @param time the time taken to validate the board and check for
+         *             completion, in nanoseconds
+         */
+        void recordValidation(long time) {
+            validations.add(time);
+        }
+
+        /**
+         * Forget the rotation figures of the previous game.
+         */
+        void newGame() {
+            latencies.clear();
+            validations.clear();
+        }
+
+        /**
+         * Refresh the text, if the overlay is shown and it has not been
+         * refreshed recently.
+         *
+         * @param now the time of the current frame, in nanoseconds
+         */
+        void update(long now) {
+            if (!isVisible() || now - lastUpdate < HUD_UPDATE_INTERVAL)
+                return;
+            lastUpdate = now;
+            lines[0].setText(String.format("frame  %5.1f ms avg %5.1f max (%4.2f ms work)",
+                    frames.averageMillis(), frames.maxMillis(), work.averageMillis()));
+            lines[1].setText(latencies.isEmpty() ? "click  -"
+                    : String.format("click  %5.2f ms last %5.2f max", latencies.lastMillis(), latencies.maxMillis()));
+            lines[2].setText(validations.isEmpty() ? "check  -"
+                    : String.format("check  %5.3f ms last %5.3f max", validations.lastMillis(), validations.maxMillis()));
+            SolveStatus status = solveStatus.get();
+            if (status == null)
+                lines[3].setText("solve  -");
+            else if (status.time < 0)
+                lines[3].setText(String.format("solve  #%d running %d ms", status.objective,
+                        (System.nanoTime() - status.start) / 1_000_000));
+            else if (status.solution == null)
+                lines[3].setText(String.format("solve  #%d no solution (%d ms)", status.objective,
+                        status.time / 1_000_000));
+            else
+                lines[3].setText(String.format("solve  #%d %d rotations (%d ms)", status.objective,
+                        status.solution.length(), status.time / 1_000_000));
+        }
+    }
+
+    /**
+     * Queue a rotation of the tile at the given position. It will be
+     * applied to the game on the next frame, so no request is dropped.
+     *
+     * @param position the position of the tile to rotate, 0-8
+     */
+    private void queueRotation(int position) {
+        if (pendingCount == pendingRotations.length) {
+            pendingRotations = Arrays.copyOf(pendingRotations, pendingCount * 2);
+            pendingTimes = Arrays.copyOf(pendingTimes, pendingCount * 2);
+        }
+        pendingTimes[pendingCount] = System.nanoTime();
+        pendingRotations[pendingCount++] = position;
+    }
+
+    /**
+     * Apply every queued rotation to the game in order.
+     * Consecutive requests for the same tile are merged into a single
+     * multi-turn rotation, since a tile that can turn once can keep
+     * turning (its neighbours and boats turn with it), and completion is
+     * checked once for the whole batch.
+     */
+    private void applyPendingRotations() {
+        if (pendingCount == 0)
+            return;
+        int i = 0;
+        Events.Rotation event = null;
+        while (i < pendingCount) {
+            int first = i;
+            int position = pendingRotations[i];
+            int turns = 0;
+            while (i < pendingCount && pendingRotations[i] == position) {
+                turns++;
+                i++;
+            }
+            if (event != null)
+                event.commit();
+            event = seaTilePool[position].rotate90(turns);
+            long applied = System.nanoTime();
+            for (int j = first; j < i; j++)
+                hud.recordLatency(applied - pendingTimes[j]);
+        }
+        pendingCount = 0;
+        hideCompletion();
+        // the last rotation's event includes the validation of the batch
+        long validationStart = System.nanoTime();
+        checkCompletion();
+        long validationTime = System.nanoTime() - validationStart;
+        hud.recordValidation(validationTime);
+        if (event != null) {
+            event.validationTime = validationTime;
+            event.commit();
+        }
+    }
+
+    /**
+     * Advance the tile and boat animations.
+     *
+     * @param elapsed seconds since the previous frame
+     */
+    private void animateBoard(double elapsed) {
+        double maxStep = ROTATION_SPEED * elapsed;
+        for (SeaTile seaTile : seaTilePool) {
+            if (seaTile != null)
+                seaTile.animate(maxStep);
+        }
+        double fraction = Math.min(1.0, BOAT_EASING * elapsed);
+        for (BoatTile boatTile : boatTilePool) {
+            if (boatTile != null)
+                boatTile.animate(fraction);
+        }
+    }
+
     /**
      * Set up event handlers for the main game
      *
@@ -263,6 +785,9 @@ public class Game extends Application {
             } else if (event.getCode() == KeyCode.Q) {
                 Platform.exit();
                 event.consume();
+            } else if (event.getCode() == KeyCode.H) {
+                hud.toggle();
+                event.consume();
             } else if (event.getCode() == KeyCode.SLASH) {
                 //solution.setOpacity(1.0);
                 seaTiles.setOpacity(0);
@@ -292,6 +817,19 @@ public class Game extends Application {
     }
 
 
+    /**
+     * Set up the session recorder, which journals every game and move
+     */
+    private void setUpRecorder() {
+        try {
+            Files.createDirectories(JOURNAL_DIR);
+            recorder = new SessionRecorder(JOURNAL_DIR.resolve("session-" + System.currentTimeMillis() + ".vkj"));
+        } catch (IOException e) {
+            System.err.println(":-( could not open a session journal in " + JOURNAL_DIR + ": " + e);
+        }
+    }
+
+
     /**
      * Turn the sound loop on or off
      */
@@ -346,20 +884,33 @@ public class Game extends Application {
     }
 
     /**
-     * Create each of the nine tiles
+     * Place each of the nine tiles and the boats for a new game.
+     * The tile and boat nodes are created on the first call and then
+     * reused, so a restart only reconfigures the existing nodes.
      */
     private void makeTiles(String boardString) {
-        seaTiles.getChildren().clear();
         for (int i = 0; i < 18; i += 2) {
             char tile = boardString.charAt(i);
             int orientation = boardString.charAt(i + 1) - '0';
-            seaTiles.getChildren().add(new SeaTile(tile, orientation, i / 2));
+            int position = i / 2;
+            if (seaTilePool[position] == null) {
+                seaTilePool[position] = new SeaTile(tile, orientation, position);
+                seaTiles.getChildren().add(seaTilePool[position]);
+            } else {
+                seaTilePool[position].configure(tile, orientation, position);
+            }
         }
         boatTiles.getChildren().clear();
         for (int i = 18; i < boardString.length(); i += 2) {
             char boatTile = boardString.charAt(i);
             char edge = boardString.charAt(i + 1);
-            boatTiles.getChildren().add(new BoatTile(boatTile, edge));
+            int colour = BOAT_COLOURS.indexOf(boatTile);
+            if (boatTilePool[colour] == null) {
+                boatTilePool[colour] = new BoatTile(boatTile, edge);
+            } else {
+                boatTilePool[colour].placeAtLocation(edge);
+            }
+            boatTiles.getChildren().add(boatTilePool[colour]);
         }
     }
 
@@ -424,23 +975,25 @@ public class Game extends Application {
         return result;
     }
 
+    /**
+     * Check the whole board string of a new game, which later rotations
+     * are checked incrementally against.
+     */
     private boolean checkBoardString() {
-        if (!Vikings.isBoardStringValid(currentBoardString)) {
+        boardValid = Vikings.isBoardStringValid(currentBoardString);
+        if (!boardValid)
             System.err.println("Vikings.isBoardStringValid(\"" + currentBoardString + "\") returned false!");
-            return false;
-        }
-        return true;
+        return boardValid;
     }
 
     /**
      * Check game completion and update status
      */
     private void checkCompletion() {
-        if (checkBoardString()) {
-            String boatPlacement = currentBoardString.substring(18);
-            if (boatPlacement.equals(vikingsGame.getObjective().getTargetPlacement()))
-                showCompletion();
-        }
+        if (!boardValid)
+            System.err.println("The board became invalid: \"" + currentBoardString + "\"");
+        else if (PackedBoard.isSolved(currentState, targetBoats, targetMask))
+            showCompletion();
     }
 
     /**
@@ -514,14 +1067,19 @@ public class Game extends Application {
     private void newGame() {
         try {
             hideCompletion();
+            pendingCount = 0;
+            hud.newGame();
             vikingsGame = new Vikings((int) difficulty.getValue() - 1);
-            String sol = Vikings.findSolution(vikingsGame.getObjective());
-            if (sol != null)
-                makeSolution(sol);
+            solveInBackground(vikingsGame.getObjective());
             System.out.println(vikingsGame.getObjective());
+            if (recorder != null)
+                recorder.recordGameStart(vikingsGame.getObjective().getProblemNumber());
             makeTiles(vikingsGame.getObjective().getInitialState());
             addObjectiveToBoard();
             currentBoardString = vikingsGame.getObjective().getInitialState();
+            currentState = PackedBoard.fromBoardString(currentBoardString);
+            targetBoats = PackedBoard.boatsFromPlacement(vikingsGame.getObjective().getTargetPlacement());
+            targetMask = PackedBoard.placementMask(vikingsGame.getObjective().getTargetPlacement());
             checkBoardString();
         } catch (IllegalArgumentException e) {
             System.err.println("Uh oh. " + e);
@@ -531,6 +1089,44 @@ public class Game extends Application {
     }
 
 
+    /**
+     * @return true if the objective's initial state already has every boat
+     * on its target edge
+     */
+    private static boolean isSolved(Objective objective) {
+        return PackedBoard.isSolved(PackedBoard.fromBoardString(objective.getInitialState()),
+                PackedBoard.boatsFromPlacement(objective.getTargetPlacement()),
+                PackedBoard.placementMask(objective.getTargetPlacement()));
+    }
+
+    /**
+     * Solve an objective on the solver thread, and show the solution if it
+     * is still the current objective when the solve finishes.
+     *
+     * @param objective the objective to solve
+     */
+    private void solveInBackground(Objective objective) {
+        SolveStatus queued = new SolveStatus(objective.getProblemNumber(), System.nanoTime(), -1, null);
+        solveStatus.set(queued);
+        solveExecutor.execute(() -> {
+            if (solveStatus.get() != queued)
+                return; // a newer game has started
+            String found = Vikings.findSolution(objective);
+            // the solver returns the empty string both for no solution and
+            // for an objective that is already solved
+            String solution = found.isEmpty() && !isSolved(objective) ? null : found;
+            SolveStatus finished = new SolveStatus(queued.objective, queued.start, System.nanoTime() - queued.start,
+                    solution);
+            if (solveStatus.compareAndSet(queued, finished) && solution != null) {
+                Platform.runLater(() -> {
+                    if (solveStatus.get() == finished)
+                        makeSolution(solution);
+                });
+            }
+        });
+    }
+
+
     @Override
     public void start(Stage primaryStage) {
         primaryStage.setTitle("VIKINGS Brainstorm");
@@ -543,13 +1139,29 @@ public class Game extends Application {
 
         setUpHandlers(scene);
         setUpSoundLoop();
+        setUpRecorder();
+        preloadImages();
         makeBoard();
         makeControls();
         makeCompletion();
+        root.getChildren().add(hud);
 
         newGame();
+        animator.start();
 
         primaryStage.setScene(scene);
         primaryStage.show();
     }
+
+    @Override
+    public void stop() {
+        solveExecutor.shutdownNow();
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println(":-( could not write the session journal: " + e);
+            }
+        }
+    }
 }
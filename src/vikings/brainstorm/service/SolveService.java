@@ -0,0 +1,253 @@
+package vikings.brainstorm.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import vikings.brainstorm.Events;
+import vikings.brainstorm.Solver;
+import vikings.brainstorm.Vikings;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A local HTTP service which solves Vikings objectives.
+ * <p>
+ * <pre>
+ *   GET /solve?initial=N0O1N1N0O0O1N0N3N1Rt&amp;target=Rv
+ * </pre>
+ * responds with the shortest rotation string as text/plain (empty if the
+ * objective has no solution), or 400 if the initial state is not a valid
+ * board string.
+ * <p>
+ * Each request is handled on its own virtual thread when the runtime
+ * supports them (a cached thread pool otherwise). Identical requests that
+ * arrive while a solve is in progress wait for that solve rather than
+ * starting their own, and solutions are kept in an LRU cache. At most
+ * {@code solvers} objectives are solved at once and at most {@code queued}
+ * more may wait; beyond that the service responds 503 with Retry-After.
+ */
+public class SolveService {
+    public static final int DEFAULT_PORT = 8111;
+
+    static {
+        // Without TCP_NODELAY every keep-alive response waits out the
+        // client's delayed ACK (about 40 ms). Must be set before the JDK
+        // server reads its configuration.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null)
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /* one solver per concurrent solve; a request takes one from the pool */
+    private final BlockingQueue<Solver> solvers;
+    private final Semaphore admission;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, String> cache;
+
+    /**
+     * @param port       the port to listen on (on the loopback address), or 0 for any free port
+     * @param solvers    the maximum number of objectives solved at once
+     * @param queued     the maximum number of solves waiting for a solver
+     * @param cacheSize  the number of solutions to keep
+     * @throws IOException if the server cannot be bound
+     */
+    public SolveService(int port, int solvers, int queued, int cacheSize) throws IOException {
+        this.solvers = new ArrayBlockingQueue<>(solvers);
+        for (int i = 0; i < solvers; i++)
+            this.solvers.add(new Solver());
+        this.admission = new Semaphore(solvers + queued);
+        this.cache = new LinkedHashMap<String, String>(cacheSize * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/solve", this::handleSolve);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * @return an executor which runs each task on a new virtual thread, or a
+     * cached thread pool if virtual threads are not available
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * @return the port the service is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String initial = query.get("initial");
+            String target = query.get("target");
+            if (initial == null || target == null || !isValid(initial, target)) {
+                respond(exchange, 400, "Expected a valid initial board string and target placement\n");
+                return;
+            }
+            String solution = solve(initial, target);
+            if (solution == null) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "Too many solves in progress\n");
+            } else {
+                respond(exchange, 200, solution);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean isValid(String initial, String target) {
+        try {
+            return Vikings.isBoardStringValid(initial) && target.matches("([BGRY][a-x]){1,4}");
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Solve an objective, from the cache, by joining an identical solve in
+     * progress, or by solving it on this thread.
+     *
+     * @return the solution, or null if the service is saturated
+     */
+    String solve(String initial, String target) throws IOException {
+        String key = initial + '/' + target;
+        Events.CacheLookup lookup = new Events.CacheLookup();
+        lookup.begin();
+        String cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (lookup.shouldCommit()) {
+            lookup.cache = "solve service";
+            lookup.hit = cached != null;
+            lookup.commit();
+        }
+        if (cached != null)
+            return cached;
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null)
+            return await(existing);
+
+        if (!admission.tryAcquire()) {
+            inFlight.remove(key, mine);
+            mine.complete(null);
+            return null;
+        }
+        try {
+            Solver solver = solvers.take();
+            try {
+                String solution = solver.solve(initial, target);
+                synchronized (cache) {
+                    cache.put(key, solution);
+                }
+                mine.complete(solution);
+                return solution;
+            } finally {
+                solvers.add(solver);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mine.complete(null);
+            return null;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+            admission.release();
+        }
+    }
+
+    private static String await(CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IOException("Solve failed", e.getCause());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null)
+            return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Run the service until the process is stopped.
+     *
+     * @param args optionally, the port to listen on
+     * @throws IOException if the server cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int cpus = Runtime.getRuntime().availableProcessors();
+        SolveService service = new SolveService(port, cpus, cpus * 16, 4096);
+        service.start();
+        System.out.println("Solving on http://localhost:" + service.getPort() + "/solve");
+    }
+}
@@ -0,0 +1,76 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AnytimeSolverTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    @Test
+    public void testOptimal() {
+        for (int i = 0; i < 15; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            AnytimeSolver solver = new AnytimeSolver(objective);
+            int length = FindSolutionTest.SOLUTIONS[i][0].length();
+            assertTrue("Lower bound " + solver.getLowerBound() + " for " + objective + " exceeds " + length,
+                    solver.getLowerBound() <= length);
+            String solution = solver.solve(1, TimeUnit.MINUTES);
+            assertTrue(solver.isOptimal());
+            assertEquals(length, solver.getLowerBound());
+            assertEquals(solution, solver.getBest());
+            assertEquals(length, solution.length());
+        }
+    }
+
+    @Test
+    public void testProgress() {
+        AnytimeSolver solver = new AnytimeSolver(Objective.OBJECTIVES[29]);
+        List<int[]> reports = new ArrayList<>();
+        solver.setProgress((bestLength, lowerBound) -> reports.add(new int[]{bestLength, lowerBound}));
+        String solution = solver.solve(1, TimeUnit.MINUTES);
+        assertTrue(solver.isOptimal());
+        assertEquals(new Solver().solve(Objective.OBJECTIVES[29]).length(), solution.length());
+        int[] previous = {Integer.MAX_VALUE, 0};
+        for (int[] report : reports) {
+            int bestLength = report[0] < 0 ? Integer.MAX_VALUE : report[0];
+            assertTrue(bestLength <= previous[0]);
+            assertTrue(report[1] >= previous[1]);
+            assertTrue(report[1] <= bestLength);
+            previous = new int[]{bestLength, report[1]};
+        }
+        assertEquals(solution.length(), previous[0]);
+        assertEquals(solution.length(), previous[1]);
+    }
+
+    @Test
+    public void testCancel() {
+        AnytimeSolver solver = new AnytimeSolver(Objective.OBJECTIVES[58]);
+        solver.cancel();
+        solver.solve(1, TimeUnit.MINUTES);
+        assertFalse(solver.isOptimal());
+
+        solver = new AnytimeSolver(Objective.OBJECTIVES[58]);
+        Thread.currentThread().interrupt();
+        solver.solve(1, TimeUnit.MINUTES);
+        assertTrue(Thread.interrupted());
+        assertFalse(solver.isOptimal());
+    }
+
+    @Test
+    public void testUnsolvable() {
+        AnytimeSolver solver = new AnytimeSolver(new Objective("Ra", "N0O1N1N0O0O1N0N3N1Rt", 0));
+        assertNull(solver.solve(1, TimeUnit.MINUTES));
+        assertTrue(solver.isOptimal());
+    }
+}
@@ -0,0 +1,87 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class BoardBatchTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    /**
+     * @return a board with random tiles and up to four boats on distinct edges
+     */
+    private static long randomBoard(Random random) {
+        long state = random.nextLong() & (PackedBoard.ORIENTATION_MASK | PackedBoard.TYPE_MASK);
+        long boats = PackedBoard.BOATS_MASK;
+        int used = 0;
+        for (int c = 0; c < PackedBoard.NUM_BOATS; c++) {
+            int edge = random.nextInt(PackedBoard.NUM_EDGES);
+            if (random.nextBoolean() || (used >> edge & 1) != 0)
+                continue;
+            used |= 1 << edge;
+            boats &= ~(31L << (PackedBoard.BOAT_BITS * c));
+            boats |= (long) edge << (PackedBoard.BOAT_BITS * c);
+        }
+        return state | boats << PackedBoard.BOAT_SHIFT;
+    }
+
+    @Test
+    public void testTranspose() {
+        Random random = new Random(1);
+        long[] matrix = new long[BoardBatch.LANES];
+        for (int i = 0; i < matrix.length; i++)
+            matrix[i] = random.nextLong();
+        long[] transposed = matrix.clone();
+        BoardBatch.transpose(transposed);
+        for (int i = 0; i < matrix.length; i++) {
+            for (int j = 0; j < matrix.length; j++)
+                assertEquals("Wrong bit " + i + ", " + j, matrix[i] >>> j & 1, transposed[j] >>> i & 1);
+        }
+    }
+
+    @Test
+    public void testOverlapFree() {
+        // the packed test agrees with the board string one
+        Random random = new Random(2);
+        for (int n = 0; n < 2000; n++) {
+            long state = randomBoard(random);
+            String boardString = PackedBoard.toBoardString(state);
+            boolean overlapFree = true;
+            for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                for (int q = 0; q < Tile.NUM_POSITIONS; q++) {
+                    if (p != q && Vikings.doTilesOverlap(boardString, p, q))
+                        overlapFree = false;
+                }
+            }
+            assertEquals("Wrong overlap for " + boardString, overlapFree, BoardBatch.isOverlapFree(state));
+        }
+    }
+
+    @Test
+    public void testEvaluate() {
+        Random random = new Random(3);
+        // not a multiple of 64, to test the last, partial batch
+        int count = 1000;
+        long[] states = new long[count];
+        for (int i = 0; i < count; i++)
+            states[i] = randomBoard(random);
+        for (int i = 0; i < Objective.OBJECTIVES.length; i++)
+            states[i] = PackedBoard.fromBoardString(Objective.OBJECTIVES[i].getInitialState());
+        long[] overlapFree = new long[(count + 63) / 64];
+        int[] rotatable = new int[count];
+        BoardBatch.evaluate(states, count, overlapFree, rotatable);
+        for (int i = 0; i < count; i++) {
+            String boardString = PackedBoard.toBoardString(states[i]);
+            assertEquals("Wrong overlap for " + boardString, BoardBatch.isOverlapFree(states[i]),
+                    (overlapFree[i / 64] >>> i & 1) != 0);
+            assertEquals("Wrong rotatable mask for " + boardString, PackedBoard.rotatableMask(states[i]),
+                    rotatable[i]);
+        }
+        assertEquals("Expected no bits beyond the last board", 0, overlapFree[count / 64] >>> (count % 64));
+    }
+}
@@ -3,6 +3,9 @@ package vikings.brainstorm;
 import org.junit.Rule;
 import org.junit.rules.Timeout;
 import org.junit.Test;
+
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 
 public class CanRotateTileTest {
@@ -36,6 +39,25 @@ public class CanRotateTileTest {
         }
     }
 
+    @Test
+    public void testBlockedTables() {
+        // the tables agree with checking the neighbours of each tile
+        Random random = new Random(1);
+        for (int i = 45; i < 50; i++) {
+            String boardString = Objective.OBJECTIVES[i].getInitialState();
+            long types = PackedBoard.fromBoardString(boardString) & PackedBoard.TYPE_MASK;
+            for (int n = 0; n <= PackedBoard.BLOCKED_TABLE_THRESHOLD; n++)
+                PackedBoard.blockedMask(types);
+            for (int n = 0; n < 1000; n++) {
+                long state = types | random.nextInt(1 << PackedBoard.TYPE_SHIFT);
+                for (int p = 0; p < 9; p++) {
+                    assertEquals("Wrong blocked mask for " + PackedBoard.toBoardString(state) + " at " + p,
+                            PackedBoard.isBlocked(state, p), (PackedBoard.blockedMask(state) >> p & 1) != 0);
+                }
+            }
+        }
+    }
+
     private void testTrivialTrue() {
         test(Objective.OBJECTIVES[0].getInitialState(), 8, true);
     }
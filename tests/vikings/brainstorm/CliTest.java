@@ -0,0 +1,70 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CliTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    /**
+     * Run the command line, and check its exit status and what it prints.
+     *
+     * @param expected       the expected exit status
+     * @param expectedOutput the expected line of output, or null if nothing
+     *                       should be printed, in which case an error message
+     *                       should be printed instead
+     */
+    private void test(int expected, String expectedOutput, String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = Cli.run(args, new PrintStream(out, true), new PrintStream(err, true));
+        String command = String.join(" ", args);
+        assertEquals("Wrong exit status for " + command, expected, status);
+        if (expectedOutput == null) {
+            assertEquals("Expected no output for " + command, "", out.toString());
+            assertTrue("Expected an error message for " + command, err.size() > 0);
+        } else {
+            assertEquals("Wrong output for " + command, expectedOutput + System.lineSeparator(), out.toString());
+            assertEquals("Expected no error message for " + command, "", err.toString());
+        }
+    }
+
+    @Test
+    public void testSolve() {
+        test(0, new Solver().solve(Objective.OBJECTIVES[0]), "solve", "0");
+        test(0, new Solver().solve("N0O1N1N0O0O1N0N3N1Rt", "Rv"), "solve", "N0O1N1N0O0O1N0N3N1Rt", "Rv");
+        test(1, null, "solve", "N0O1N1N0O0O1N0N3N1RtBt", "Rv");
+        test(2, null, "solve", "60");
+        test(2, null, "solve", "first");
+        test(2, null, "solve", "N0O1N1N0O0O1N0N3N1Rt", "Za");
+        test(2, null, "solve", "N0O1N1N0O0O1N0N3N1Rt", "Rz");
+        test(2, null, "solve", "N0O1N1N0O0O1N0N3N1Rt", "");
+        test(0, "", "solve", "N0O1N1N0O0O1N0N3N1Rt", "Rt");
+        test(3, null, "solve", "N0O1N1N0O0O1N0N3N1Rt", "Ra");
+    }
+
+    @Test
+    public void testValidate() {
+        test(0, "true", "validate", Objective.OBJECTIVES[0].getInitialState());
+        test(1, "false", "validate", "N0O1N1N0O0O1N0N3N1RtBt");
+        test(2, null, "validate");
+        test(2, null);
+    }
+
+    @Test
+    public void testPlacement() {
+        for (Objective objective : Objective.OBJECTIVES)
+            assertTrue("Expected the target placement of " + objective + " to be well-formed",
+                    PackedBoard.isPlacementWellFormed(objective.getTargetPlacement()));
+        for (String placement : new String[]{"", "R", "Za", "RA", "RaRb", "BaGbRcYdBe"})
+            assertTrue("Expected " + placement + " not to be well-formed", !PackedBoard.isPlacementWellFormed(placement));
+    }
+}
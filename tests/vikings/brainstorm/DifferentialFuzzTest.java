@@ -0,0 +1,56 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DifferentialFuzzTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(20000);
+
+    @Test
+    public void testGenerators() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 2000; i++) {
+            String wellFormed = Utilities.randomWellFormedBoard(random);
+            assertTrue("expected a well-formed board, but got " + wellFormed,
+                    Vikings.isBoardStringWellFormed(wellFormed));
+            String valid = Utilities.randomValidBoard(random);
+            assertTrue("expected a valid board, but got " + valid, Vikings.isBoardStringValid(valid));
+        }
+    }
+
+    @Test
+    public void testReferenceRotation() {
+        for (int i = 0; i < Utilities.completeObjOne.length - 1; i++) {
+            String board = Utilities.completeObjOne[i][0];
+            int position = Utilities.completeObjOne[i][1].charAt(0) - '0';
+            String expected = Utilities.completeObjOne[i + 1][0];
+            assertTrue("expected tile " + position + " of " + board + " to rotate",
+                    DifferentialFuzzer.referenceCanRotate(board, position));
+            String out = DifferentialFuzzer.referenceRotate(board, position);
+            assertEquals("expected " + expected + " after rotating tile " + position + " of " + board
+                    + ", but got " + out, expected, out);
+        }
+    }
+
+    @Test
+    public void testShrink() {
+        String out = DifferentialFuzzer.shrink("N0N0O0N0N0O0O0N0N0BaGbRc", b -> b.contains("Gb"));
+        assertEquals("expected the board to shrink to Gb, but got " + out, "Gb", out);
+        out = DifferentialFuzzer.shrink("O1O3N2Ry", b -> b.length() >= 4);
+        assertEquals("expected the board to shrink to 0000, but got " + out, "0000", out);
+    }
+
+    @Test
+    public void testNoMismatches() throws InterruptedException {
+        DifferentialFuzzer.Report report = DifferentialFuzzer.run(1, 30000, 2);
+        assertTrue("expected the reference and the engine to agree, but got " + report, report.isClean());
+        assertEquals("expected every case to run", 30000, report.cases);
+    }
+}
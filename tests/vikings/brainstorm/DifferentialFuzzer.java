@@ -0,0 +1,358 @@
+package vikings.brainstorm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cross-checks the board rules between the string-based reference
+ * implementations and the packed engine on random boards, so that the
+ * engine can replace the reference with confidence.
+ * <p>
+ * The reference is {@link Vikings#isBoardStringWellFormed(String)},
+ * {@link Vikings#isBoardStringValid(String)},
+ * {@link Vikings#doTilesOverlap(String, int, int)} and
+ * {@link Vikings#doTilesInterlock(String, int, int)}, and for rotation
+ * (where Vikings already uses the packed engine) a model built from the
+ * edge coordinates of {@link Location} and the reference overlap test.
+ * Each case is a board from the generators in {@link Utilities}: a third
+ * malformed, a third well-formed and a third valid. Every rule that applies
+ * to the board is checked, for every position or pair of positions.
+ * <p>
+ * A board on which the two sides disagree is shrunk, by deleting and
+ * simplifying characters for as long as the same rule still disagrees, to
+ * a small board that shows the mismatch. Cases are run on several threads,
+ * each with its own random stream, so a run is reproducible from its seed.
+ * <pre>
+ *   java vikings.brainstorm.DifferentialFuzzer cases=10000000 threads=8 seed=1
+ * </pre>
+ */
+public class DifferentialFuzzer {
+    /* the characters tried in place of a character when shrinking, simplest first */
+    private static final String SIMPLER = "0123NOBGRYabcdefghijklmnopqrstuvwx";
+
+    /* the most mismatching boards kept for each rule */
+    private static final int MAX_REPORTED = 3;
+
+    /**
+     * A disagreement between the reference and the engine.
+     */
+    public static class Mismatch {
+        public final String rule;
+        public final String board;
+        /* the positions the rule was given, if any */
+        public final String positions;
+        public final String expected;
+        public final String actual;
+
+        Mismatch(String rule, String board, String positions, String expected, String actual) {
+            this.rule = rule;
+            this.board = board;
+            this.positions = positions;
+            this.expected = expected;
+            this.actual = actual;
+        }
+
+        @Override
+        public String toString() {
+            return rule + "(\"" + board + "\"" + positions + "): reference " + expected + ", engine " + actual;
+        }
+    }
+
+    /**
+     * The results of a run.
+     */
+    public static class Report {
+        public final long cases;
+        public final long nanos;
+        /* per rule, the number of mismatching cases and a few shrunk examples */
+        public final Map<String, Long> counts = new TreeMap<>();
+        public final Map<String, List<Mismatch>> examples = new TreeMap<>();
+
+        Report(long cases, long nanos) {
+            this.cases = cases;
+            this.nanos = nanos;
+        }
+
+        public boolean isClean() {
+            return counts.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder(String.format("%d cases in %.1f s (%.2f million per minute)",
+                    cases, nanos / 1e9, cases / (nanos / 6e10) / 1e6));
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                s.append(String.format("%n%s: %d mismatching cases", entry.getKey(), entry.getValue()));
+                for (Mismatch m : examples.get(entry.getKey()))
+                    s.append(String.format("%n  %s", m));
+            }
+            return s.toString();
+        }
+    }
+
+    private interface Rule<T> {
+        T apply();
+    }
+
+    /**
+     * @return the result of the rule, or the exception it threw, as a
+     * string to compare
+     */
+    private static <T> String outcome(Rule<T> rule) {
+        try {
+            return String.valueOf(rule.apply());
+        } catch (RuntimeException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Check every rule that applies to a board.
+     *
+     * @param board a board string, not necessarily well-formed
+     * @param only  the rule to check, or null for all of them
+     * @return the first disagreement found, or null if there is none
+     */
+    public static Mismatch check(String board, String only) {
+        String expected = outcome(() -> Vikings.isBoardStringWellFormed(board));
+        String actual = outcome(() -> PackedBoard.isWellFormed(board));
+        if (matches(only, "isBoardStringWellFormed") && !expected.equals(actual))
+            return new Mismatch("isBoardStringWellFormed", board, "", expected, actual);
+        expected = outcome(() -> Vikings.isBoardStringValid(board));
+        actual = outcome(() -> PackedBoard.isWellFormed(board) && PackedBoard.isValid(PackedBoard.fromBoardString(board)));
+        if (matches(only, "isBoardStringValid") && !expected.equals(actual))
+            return new Mismatch("isBoardStringValid", board, "", expected, actual);
+        if (!PackedBoard.isWellFormed(board) || !Vikings.isBoardStringWellFormed(board))
+            return null; // the other rules need a well-formed board
+        long state = PackedBoard.fromBoardString(board);
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            for (int q = 0; q < Tile.NUM_POSITIONS; q++) {
+                int p1 = p, p2 = q;
+                if (matches(only, "doTilesOverlap")) {
+                    expected = outcome(() -> Vikings.doTilesOverlap(board, p1, p2));
+                    actual = outcome(() -> PackedBoard.doTilesOverlap(state, p1, p2));
+                    if (!expected.equals(actual))
+                        return new Mismatch("doTilesOverlap", board, ", " + p1 + ", " + p2, expected, actual);
+                }
+                if (matches(only, "doTilesInterlock")) {
+                    expected = outcome(() -> Vikings.doTilesInterlock(board, p1, p2));
+                    actual = outcome(() -> PackedBoard.doTilesInterlock(state, p1, p2));
+                    if (!expected.equals(actual))
+                        return new Mismatch("doTilesInterlock", board, ", " + p1 + ", " + p2, expected, actual);
+                }
+            }
+        }
+        if (!PackedBoard.isValid(state) || !Vikings.isBoardStringValid(board))
+            return null; // rotation needs a valid board
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            int position = p;
+            if (matches(only, "canRotateTile")) {
+                expected = outcome(() -> referenceCanRotate(board, position));
+                actual = outcome(() -> Vikings.canRotateTile(board, position));
+                if (!expected.equals(actual))
+                    return new Mismatch("canRotateTile", board, ", " + position, expected, actual);
+            }
+            if (matches(only, "rotateTile")) {
+                expected = outcome(() -> referenceRotate(board, position));
+                actual = outcome(() -> Vikings.rotateTile(board, position));
+                if (!expected.equals(actual))
+                    return new Mismatch("rotateTile", board, ", " + position, expected, actual);
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String only, String rule) {
+        return only == null || only.equals(rule);
+    }
+
+    /**
+     * @return true if the edge is one of the four around the tile position
+     */
+    private static boolean isEdgeOf(char edge, int position) {
+        Location location = Location.fromEdge(edge);
+        int dx = location.getX() - (2 * (position % 3) + 1);
+        int dy = location.getY() - (2 * (position / 3) + 1);
+        return Math.abs(dx) + Math.abs(dy) == 1;
+    }
+
+    /**
+     * A tile can rotate if a boat is on one of its edges, and no adjacent
+     * tile is solid at the edge between them: if one were, the tile would
+     * overlap it when turned to face it with one of its own solid sides.
+     */
+    static boolean referenceCanRotate(String board, int position) {
+        boolean boat = false;
+        for (int i = 18; i < board.length(); i += 2)
+            boat |= isEdgeOf(board.charAt(i + 1), position);
+        if (!boat)
+            return false;
+        for (int q = 0; q < Tile.NUM_POSITIONS; q++) {
+            for (char orientation = '0'; orientation <= '3'; orientation++) {
+                String turned = board.substring(0, 2 * position + 1) + orientation + board.substring(2 * position + 2);
+                if (Vikings.doTilesOverlap(turned, position, q))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turn the tile a quarter clockwise, and the boats on its edges a
+     * quarter clockwise about its centre (x, y) to (x - dy, y + dx).
+     */
+    static String referenceRotate(String board, int position) {
+        StringBuilder rotated = new StringBuilder(board);
+        rotated.setCharAt(2 * position + 1, (char) ('0' + (board.charAt(2 * position + 1) - '0' + 1) % 4));
+        int x = 2 * (position % 3) + 1;
+        int y = 2 * (position / 3) + 1;
+        for (int i = 18; i < board.length(); i += 2) {
+            Location location = Location.fromEdge(board.charAt(i + 1));
+            int dx = location.getX() - x;
+            int dy = location.getY() - y;
+            if (Math.abs(dx) + Math.abs(dy) != 1)
+                continue;
+            for (char edge = 'a'; edge <= 'x'; edge++) {
+                Location to = Location.fromEdge(edge);
+                if (to.getX() == x - dy && to.getY() == y + dx)
+                    rotated.setCharAt(i + 1, edge);
+            }
+        }
+        return rotated.toString();
+    }
+
+    /**
+     * Shrink a failing input: repeatedly delete two characters or one, or
+     * replace one with a simpler one, while the input still fails.
+     *
+     * @param input   an input for which failing is true
+     * @param failing the test
+     * @return a locally minimal input for which failing is true
+     */
+    public static String shrink(String input, Predicate<String> failing) {
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int width = 2; width >= 1 && !shrunk; width--) {
+                for (int i = 0; i + width <= input.length() && !shrunk; i++) {
+                    String candidate = input.substring(0, i) + input.substring(i + width);
+                    if (failing.test(candidate)) {
+                        input = candidate;
+                        shrunk = true;
+                    }
+                }
+            }
+            for (int i = 0; i < input.length() && !shrunk; i++) {
+                int rank = SIMPLER.indexOf(input.charAt(i));
+                int simpler = rank < 0 ? SIMPLER.length() : rank;
+                for (int r = 0; r < simpler && !shrunk; r++) {
+                    String candidate = input.substring(0, i) + SIMPLER.charAt(r) + input.substring(i + 1);
+                    if (failing.test(candidate)) {
+                        input = candidate;
+                        shrunk = true;
+                    }
+                }
+            }
+        }
+        return input;
+    }
+
+    /**
+     * @param mismatch a mismatch
+     * @return a mismatch of the same rule on a shrunk board
+     */
+    public static Mismatch shrink(Mismatch mismatch) {
+        String rule = mismatch.rule;
+        String board = shrink(mismatch.board, b -> check(b, rule) != null);
+        return check(board, rule);
+    }
+
+    /**
+     * Run a number of random cases.
+     *
+     * @param seed    the seed of the random boards
+     * @param cases   the number of cases
+     * @param threads the number of threads to run the cases on
+     * @return the report of the run
+     */
+    public static Report run(long seed, long cases, int threads) throws InterruptedException {
+        Map<String, LongAdder> counts = new ConcurrentSkipListMap<>();
+        Map<String, List<Mismatch>> examples = new TreeMap<>();
+        SplittableRandom root = new SplittableRandom(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            SplittableRandom random = root.split();
+            long share = cases / threads + (t < cases % threads ? 1 : 0);
+            workers.add(executor.submit(() -> {
+                for (long i = 0; i < share; i++) {
+                    String board;
+                    switch ((int) (i % 3)) {
+                        case 0:
+                            board = Utilities.randomMalformedBoard(random);
+                            break;
+                        case 1:
+                            board = Utilities.randomWellFormedBoard(random);
+                            break;
+                        default:
+                            board = Utilities.randomValidBoard(random);
+                            break;
+                    }
+                    Mismatch mismatch = check(board, null);
+                    if (mismatch == null)
+                        continue;
+                    counts.computeIfAbsent(mismatch.rule, r -> new LongAdder()).increment();
+                    synchronized (examples) {
+                        if (examples.computeIfAbsent(mismatch.rule, r -> new ArrayList<>()).size() >= MAX_REPORTED)
+                            continue;
+                    }
+                    Mismatch shrunk = shrink(mismatch);
+                    synchronized (examples) {
+                        List<Mismatch> list = examples.get(mismatch.rule);
+                        if (list.size() < MAX_REPORTED && list.stream().noneMatch(m -> m.board.equals(shrunk.board)))
+                            list.add(shrunk);
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Fuzzing failed", e.getCause());
+        }
+        Report report = new Report(cases, System.nanoTime() - start);
+        counts.forEach((rule, count) -> report.counts.put(rule, count.sum()));
+        report.examples.putAll(examples);
+        return report;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long cases = 10_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            switch (kv[0]) {
+                case "cases": cases = Long.parseLong(kv[1]); break;
+                case "threads": threads = Integer.parseInt(kv[1]); break;
+                case "seed": seed = Long.parseLong(kv[1]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        System.out.printf("seed=%d threads=%d%n", seed, threads);
+        System.out.println(run(seed, cases, threads));
+    }
+}
@@ -0,0 +1,75 @@
+package vikings.brainstorm;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventsTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    private List<RecordedEvent> record(Runnable work) throws IOException {
+        Path file = Files.createTempFile("vikings", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("vikings.Solve");
+            recording.enable("vikings.Layer");
+            recording.enable("vikings.CacheLookup");
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse("Expected solve events to be disabled by default", new Events.Solve().isEnabled());
+        assertFalse("Expected layer events to be disabled by default", new Events.Layer().isEnabled());
+        assertFalse("Expected cache events to be disabled by default", new Events.CacheLookup().isEnabled());
+        assertFalse("Expected rotation events to be disabled by default", new Events.Rotation().isEnabled());
+    }
+
+    @Test
+    public void testSolve() throws IOException {
+        Objective objective = Objective.OBJECTIVES[0];
+        List<RecordedEvent> events = record(() -> new Solver().solve(objective));
+        int solves = 0, layers = 0, lookups = 0;
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "vikings.Solve":
+                    solves++;
+                    assertEquals("Wrong objective", objective.getProblemNumber(), event.getInt("objective"));
+                    assertEquals("Wrong algorithm", "BFS", event.getString("algorithm"));
+                    assertEquals("Wrong length", 7, event.getInt("length"));
+                    assertTrue("Expected nodes", event.getLong("nodes") > 0);
+                    break;
+                case "vikings.Layer":
+                    int depth = event.getInt("depth");
+                    assertTrue("Wrong layer depth " + depth, depth >= 0 && depth < 6);
+                    layers++;
+                    break;
+                case "vikings.CacheLookup":
+                    lookups++;
+                    break;
+            }
+        }
+        assertEquals("Expected one solve event", 1, solves);
+        assertEquals("Expected a layer event for each depth expanded", 6, layers);
+        assertEquals("Expected one cache lookup", 1, lookups);
+    }
+}
@@ -26,6 +26,19 @@ public class FindSolutionTest {
         }
     }
 
+    @Test
+    public void testUnsolvable() {
+        // edge a is on tile 0, which is blocked by tile 3 in every reachable state
+        test(new Objective("Ra", "N0O1N1N0O0O1N0N3N1Rt", 0), new String[]{""});
+        // there is no blue boat
+        test(new Objective("BaRt", "N0O1N1N0O0O1N0N3N1Rt", 0), new String[]{""});
+    }
+
+    @Test
+    public void testSolvable() {
+        test(new Objective("Rx", "N0O1N1N0O0O1N0N3N1Rt", 0), new String[]{"888"});
+    }
+
     /*
     // uncomment this to further test your solver
     @Test
@@ -41,6 +41,31 @@ public class IsBoardStringValidTest {
         }
     }
 
+    @Test
+    public void testAfterRotation() {
+        testTrivial();
+        for (Objective objective : Objective.OBJECTIVES) {
+            // a few valid states of each objective, and from each the rotation
+            // of every tile, legal or not
+            long state = PackedBoard.fromBoardString(objective.getInitialState());
+            for (int step = 0; step < 8; step++) {
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    long rotated = PackedBoard.rotate(state, p);
+                    String boardString = PackedBoard.toBoardString(rotated);
+                    boolean expected = Vikings.isBoardStringValid(boardString);
+                    boolean out = PackedBoard.isValidAfterRotation(rotated, p);
+                    assertEquals("expected " + expected + " after rotating tile " + p + " to " + boardString +
+                            ", but got " + out, expected, out);
+                }
+                // legal rotations of the lowest and highest rotatable tiles, in turn
+                int rotatable = PackedBoard.rotatableMask(state);
+                int next = step % 2 == 0 ? Integer.numberOfTrailingZeros(rotatable)
+                        : 31 - Integer.numberOfLeadingZeros(rotatable);
+                state = PackedBoard.rotate(state, next);
+            }
+        }
+    }
+
     private void testTrivial() {
         test(Objective.OBJECTIVES[0].getInitialState().replace('O', 'Q'), false);
         test(Objective.OBJECTIVES[0].getInitialState(), true);
@@ -0,0 +1,74 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ObjectiveIndexTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(1000);
+
+    private final int[] lengths = new int[Objective.OBJECTIVES.length];
+    private final ObjectiveIndex index = new ObjectiveIndex();
+
+    {
+        // the index does not check lengths, so made-up ones save solving every objective
+        for (int i = 0; i < Objective.OBJECTIVES.length; i++) {
+            lengths[i] = i;
+            index.add(Objective.OBJECTIVES[i], i / 15, lengths[i]);
+        }
+    }
+
+    private List<Objective> matching(java.util.function.IntPredicate predicate) {
+        List<Objective> found = new ArrayList<>();
+        for (int i = 0; i < Objective.OBJECTIVES.length; i++) {
+            if (predicate.test(i))
+                found.add(Objective.OBJECTIVES[i]);
+        }
+        return found;
+    }
+
+    @Test
+    public void testTier() {
+        assertEquals(60, index.query().count());
+        for (int tier = 0; tier < ObjectiveIndex.NUM_TIERS; tier++) {
+            int t = tier;
+            assertEquals(matching(i -> i / 15 == t), index.query().tier(tier).find());
+        }
+    }
+
+    @Test
+    public void testBoatsAndColours() {
+        for (int boats = 1; boats <= 4; boats++) {
+            int b = boats;
+            assertEquals(matching(i -> Objective.OBJECTIVES[i].getTargetPlacement().length() == 2 * b),
+                    index.query().boats(boats).find());
+        }
+        assertEquals(matching(i -> Objective.OBJECTIVES[i].getTargetPlacement().contains("G")
+                        && !Objective.OBJECTIVES[i].getTargetPlacement().contains("Y")),
+                index.query().colours(Colour.GREEN).without(Colour.YELLOW).find());
+    }
+
+    @Test
+    public void testCombined() {
+        List<Objective> expected = matching(i -> Objective.OBJECTIVES[i].getTargetPlacement().length() == 6
+                && Objective.OBJECTIVES[i].getTargetPlacement().contains("Rb")
+                && lengths[i] >= 20 && lengths[i] <= 40);
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, index.query().boats(3).length(20, 40).target(Colour.RED, 'b').find());
+    }
+
+    @Test
+    public void testLayout() {
+        assertEquals(matching(i -> Objective.OBJECTIVES[i].getInitialState().startsWith("N0O1N1N0O0O1N0N3N1")
+                        || Objective.OBJECTIVES[i].getInitialState().matches("N.O.N.N.O.O.N.N.N..*")),
+                index.query().layout("NONNOONNN").find());
+        assertEquals(0, index.query().layout("OOOOOOOOO").count());
+    }
+}
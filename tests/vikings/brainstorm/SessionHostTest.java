@@ -0,0 +1,104 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SessionHostTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(500);
+
+    private void play(SessionHost host, long session, String rotations, int expected) {
+        int result = -1;
+        for (int i = 0; i < rotations.length(); i++)
+            result = host.rotate(session, rotations.charAt(i) - '0');
+        assertEquals("Expected result " + expected + " after rotations " + rotations + " in session " + session,
+                expected, result);
+    }
+
+    @Test
+    public void testSolve() {
+        SessionHost host = new SessionHost(4);
+        long first = host.open(Objective.OBJECTIVES[0]);
+        long second = host.open(Objective.OBJECTIVES[0]);
+        play(host, first, "854777", SessionHost.ROTATED);
+        play(host, second, "8", SessionHost.ROTATED);
+        play(host, first, "6", SessionHost.SOLVED);
+        assertEquals(Utilities.completeObjOne[Utilities.completeObjOne.length - 1][0], host.getBoardString(first));
+        assertEquals(7, host.getMoveCount(first));
+        assertEquals(Utilities.completeObjOne[1][0], host.getBoardString(second));
+    }
+
+    @Test
+    public void testIllegal() {
+        SessionHost host = new SessionHost(1);
+        long session = host.open(Objective.OBJECTIVES[45]);
+        play(host, session, "0", SessionHost.ILLEGAL);
+        assertEquals(0, host.getMoveCount(session));
+        assertEquals(Objective.OBJECTIVES[45].getInitialState(), host.getBoardString(session));
+    }
+
+    @Test
+    public void testCapacity() {
+        SessionHost host = new SessionHost(2);
+        long first = host.open(Objective.OBJECTIVES[0]);
+        host.open(Objective.OBJECTIVES[1]);
+        assertEquals(-1, host.open(Objective.OBJECTIVES[2]));
+        host.close(first);
+        play(host, first, "8", SessionHost.CLOSED);
+        long reopened = host.open(Objective.OBJECTIVES[2]);
+        assertTrue("Expected a session to open in the closed session's slot", reopened >= 0);
+        assertEquals(Objective.OBJECTIVES[2], host.getObjective(reopened));
+        assertEquals(2, host.size());
+    }
+
+    @Test
+    public void testStaleSession() {
+        SessionHost host = new SessionHost(1);
+        long first = host.open(Objective.OBJECTIVES[0]);
+        host.close(first);
+        long second = host.open(Objective.OBJECTIVES[0]);
+        assertTrue("Expected a new handle for a session in a reused slot", second != first);
+        play(host, first, "8", SessionHost.CLOSED);
+        assertEquals(SessionHost.NO_STATE, host.getState(first));
+        assertEquals(-1, host.getMoveCount(first));
+        assertNull(host.getObjective(first));
+        assertNull(host.getBoardString(first));
+        assertEquals(0, host.getMoveCount(second));
+        assertEquals(Objective.OBJECTIVES[0].getInitialState(), host.getBoardString(second));
+        // closing the old session again must not close the new one
+        host.close(first);
+        assertEquals(1, host.size());
+        play(host, second, "8", SessionHost.ROTATED);
+    }
+
+    @Test
+    public void testManyObjectives() {
+        SessionHost host = new SessionHost(Objective.OBJECTIVES.length);
+        long[] sessions = new long[Objective.OBJECTIVES.length];
+        for (int i = 0; i < sessions.length; i++)
+            sessions[i] = host.open(Objective.OBJECTIVES[i]);
+        for (int i = 0; i < sessions.length; i++)
+            assertEquals(Objective.OBJECTIVES[i], host.getObjective(sessions[i]));
+    }
+
+    @Test
+    public void testGenerationWraps() {
+        SessionHost host = new SessionHost(1);
+        long first = host.open(Objective.OBJECTIVES[0]);
+        host.generations[0] = Integer.MAX_VALUE;
+        first = (long) Integer.MAX_VALUE << 32 | first;
+        host.close(first);
+        assertEquals(0, host.size());
+        long second = host.open(Objective.OBJECTIVES[0]);
+        assertTrue("Expected a live handle after the generation wraps, but got " + second, second >= 0);
+        play(host, first, "8", SessionHost.CLOSED);
+        play(host, second, "8", SessionHost.ROTATED);
+        host.close(second);
+        assertEquals(0, host.size());
+    }
+}
@@ -0,0 +1,77 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+public class SessionJournalTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(2000);
+
+    private void play(SessionRecorder recorder, Objective objective, String rotations) {
+        recorder.recordGameStart(objective.getProblemNumber());
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        for (int i = 0; i < rotations.length(); i++) {
+            int position = rotations.charAt(i) - '0';
+            state = PackedBoard.rotate(state, position);
+            recorder.recordMove(objective.getProblemNumber(), position, PackedBoard.orientation(state, position));
+        }
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        Path journal = Files.createTempFile("vikings", ".vkj");
+        try {
+            try (SessionRecorder recorder = new SessionRecorder(journal)) {
+                play(recorder, Objective.OBJECTIVES[0], "8547776");
+                play(recorder, Objective.OBJECTIVES[1], "744");
+                play(recorder, Objective.OBJECTIVES[0], "80");
+            }
+            SessionJournal.Summary summary = SessionJournal.open(journal).replay();
+            assertEquals("Expected 3 games in the journal", 3, summary.games);
+            assertEquals("Expected 1 completed game in the journal", 1, summary.completedGames);
+            assertEquals("Expected 12 moves in the journal", 12, summary.moves);
+            assertEquals("Expected 1 illegal move in the journal", 1, summary.illegalMoves);
+        } finally {
+            Files.delete(journal);
+        }
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        Path journal = Files.createTempFile("vikings", ".vkj");
+        try {
+            for (int session = 0; session < 2; session++) {
+                try (SessionRecorder recorder = new SessionRecorder(journal)) {
+                    play(recorder, Objective.OBJECTIVES[0], "8547776");
+                }
+            }
+            SessionJournal.Summary summary = SessionJournal.open(journal).replay();
+            assertEquals("Expected 2 completed games after appending a session", 2, summary.completedGames);
+        } finally {
+            Files.delete(journal);
+        }
+    }
+
+    @Test
+    public void testMovesAfterCompletion() throws IOException {
+        Path journal = Files.createTempFile("vikings", ".vkj");
+        try {
+            try (SessionRecorder recorder = new SessionRecorder(journal)) {
+                play(recorder, Objective.OBJECTIVES[0], "854777666");
+            }
+            SessionJournal.Summary summary = SessionJournal.open(journal).replay();
+            assertEquals("Expected 1 completed game in the journal", 1, summary.completedGames);
+            assertEquals("Expected no illegal moves in the journal", 0, summary.illegalMoves);
+            assertEquals("Expected 2 moves after completion in the journal", 2, summary.movesAfterCompletion);
+        } finally {
+            Files.delete(journal);
+        }
+    }
+}
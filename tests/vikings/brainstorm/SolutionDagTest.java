@@ -0,0 +1,68 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolutionDagTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    private void test(Objective objective, String[] expected) {
+        SolutionDag dag = SolutionDag.build(objective);
+        assertEquals("Expected " + expected.length + " solutions for " + objective,
+                expected.length, dag.countSolutions());
+        assertEquals(expected[0].length(), dag.getSolutionLength());
+        Set<String> solutions = new HashSet<>();
+        for (String solution : dag) {
+            assertTrue("Solution " + solution + " for " + objective + " is not among " + Arrays.toString(expected),
+                    Arrays.asList(expected).contains(solution));
+            solutions.add(solution);
+        }
+        assertEquals(expected.length, solutions.size());
+        for (String solution : expected)
+            assertTrue("Expected " + solution + " to be optimal for " + objective, dag.isOptimal(solution));
+    }
+
+    @Test
+    public void testStarter() {
+        for (int i = 0; i < 15; i++)
+            test(Objective.OBJECTIVES[i], FindSolutionTest.SOLUTIONS[i]);
+    }
+
+    @Test
+    public void testNotOptimal() {
+        SolutionDag dag = SolutionDag.build(Objective.OBJECTIVES[0]);
+        assertTrue(dag.isOptimal("8547776"));
+        assertFalse(dag.isOptimal("8547767"));
+        assertFalse(dag.isOptimal("854777"));
+        assertFalse(dag.isOptimal("85477768888"));
+        assertFalse(dag.isOptimal("0547776"));
+    }
+
+    @Test
+    public void testTrivial() {
+        SolutionDag dag = SolutionDag.build(new Objective("Rs", "N0O1N1N0O1O2N0N2N2Rs", 0));
+        assertEquals(0, dag.getSolutionLength());
+        assertEquals(1, dag.countSolutions());
+        assertTrue(dag.isOptimal(""));
+        assertEquals("", dag.iterator().next());
+    }
+
+    @Test
+    public void testUnsolvable() {
+        SolutionDag dag = SolutionDag.build(new Objective("Ra", "N0O1N1N0O0O1N0N3N1Rt", 0));
+        assertFalse(dag.isSolvable());
+        assertEquals(0, dag.countSolutions());
+        assertFalse(dag.iterator().hasNext());
+        assertFalse(dag.isOptimal(""));
+    }
+}
@@ -0,0 +1,80 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolutionOptimizerTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    private void assertSolves(Objective objective, String solution) {
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        for (int i = 0; i < solution.length(); i++) {
+            int position = solution.charAt(i) - '0';
+            assertTrue("Illegal rotation " + i + " of " + solution + " for " + objective,
+                    PackedBoard.canRotate(state, position));
+            state = PackedBoard.rotate(state, position);
+        }
+        String target = objective.getTargetPlacement();
+        assertTrue("Solution " + solution + " does not solve " + objective, PackedBoard.isSolved(state,
+                PackedBoard.boatsFromPlacement(target), PackedBoard.placementMask(target)));
+    }
+
+    /**
+     * @return a solution which wanders randomly for some rotations before solving the objective
+     */
+    private static String wander(Objective objective, int rotations, Random random) {
+        StringBuilder solution = new StringBuilder();
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        for (int i = 0; i < rotations; i++) {
+            int rotatable = PackedBoard.rotatableMask(state);
+            int p;
+            do {
+                p = random.nextInt(Tile.NUM_POSITIONS);
+            } while ((rotatable >> p & 1) == 0);
+            state = PackedBoard.rotate(state, p);
+            solution.append(p);
+        }
+        return solution + new Solver().solve(PackedBoard.toBoardString(state), objective.getTargetPlacement());
+    }
+
+    @Test
+    public void testLoops() {
+        SolutionOptimizer optimizer = new SolutionOptimizer();
+        assertEquals("8547776", optimizer.optimize(Objective.OBJECTIVES[0], "88888547776"));
+        assertEquals("8547776", optimizer.optimize(Objective.OBJECTIVES[0], "85477766666"));
+        assertEquals("8547776", optimizer.optimize(Objective.OBJECTIVES[0], "8547776"));
+        assertEquals("", optimizer.optimize(new Objective("Rs", "N0O1N1N0O1O2N0N2N2Rs", 0), "6666"));
+    }
+
+    @Test
+    public void testWander() {
+        SolutionOptimizer optimizer = new SolutionOptimizer();
+        Random random = new Random(36);
+        for (int i = 0; i < 15; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            String solution = wander(objective, 200, random);
+            String optimized = optimizer.optimize(objective, solution);
+            assertSolves(objective, optimized);
+            assertTrue("Expected " + optimized + " to be shorter than " + solution,
+                    optimized.length() < solution.length());
+            assertTrue(optimized.length() >= FindSolutionTest.SOLUTIONS[i][0].length());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegal() {
+        new SolutionOptimizer().optimize(Objective.OBJECTIVES[0], "0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsolved() {
+        new SolutionOptimizer().optimize(Objective.OBJECTIVES[0], "854777");
+    }
+}
@@ -0,0 +1,106 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolutionVerifierTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    /* shared by the tests, so that each objective is solved once */
+    private static final SolutionVerifier verifier = new SolutionVerifier();
+    private static String[] solutions;
+
+    private static synchronized String solution(int objective) {
+        if (solutions == null) {
+            Solver solver = new Solver();
+            solutions = new String[Objective.OBJECTIVES.length];
+            for (int i = 0; i < solutions.length; i++)
+                solutions[i] = solver.solve(Objective.OBJECTIVES[i]);
+        }
+        return solutions[objective];
+    }
+
+    private void test(Objective objective, String submission, SolutionVerifier.Status expected, int illegalStep) {
+        SolutionVerifier.Verdict verdict = verifier.verify(objective, submission);
+        assertEquals("expected " + expected + " for " + submission + " on " + objective + ", but got " + verdict,
+                expected, verdict.getStatus());
+        assertEquals("expected illegal step " + illegalStep + " for " + submission + ", but got " + verdict,
+                illegalStep, verdict.getIllegalStep());
+    }
+
+    @Test
+    public void testOptimal() {
+        for (Objective objective : Objective.OBJECTIVES) {
+            String solution = solution(objective.getProblemNumber());
+            test(objective, solution, SolutionVerifier.Status.VALID, -1);
+            SolutionVerifier.Verdict verdict = verifier.verify(objective, solution);
+            assertEquals("expected no excess for " + solution + ", but got " + verdict, 0, verdict.getExcess());
+            assertEquals("expected optimal length " + solution.length() + ", but got " + verdict,
+                    solution.length(), verdict.getOptimalLength());
+        }
+    }
+
+    @Test
+    public void testLonger() {
+        Objective objective = Objective.OBJECTIVES[0];
+        StringBuilder played = new StringBuilder();
+        for (int i = 0; i < Utilities.completeObjOne.length - 1; i++)
+            played.append(Utilities.completeObjOne[i][1]);
+        SolutionVerifier.Verdict verdict = verifier.verify(objective, played.toString());
+        assertTrue("expected " + played + " to be valid, but got " + verdict, verdict.isValid());
+        int optimal = solution(0).length();
+        assertEquals("expected " + played + " to be " + (played.length() - optimal) + " longer than optimal, but got "
+                + verdict, played.length() - optimal, verdict.getExcess());
+        // undone turns, four of a tile, only add length
+        test(objective, "8888" + played, SolutionVerifier.Status.VALID, -1);
+    }
+
+    @Test
+    public void testIllegal() {
+        Objective objective = Objective.OBJECTIVES[0];
+        String solution = solution(0);
+        test(objective, "9" + solution, SolutionVerifier.Status.ILLEGAL_ROTATION, 0);
+        test(objective, solution.substring(0, 2) + "x" + solution.substring(2), SolutionVerifier.Status.ILLEGAL_ROTATION, 2);
+        // the first tile that cannot rotate
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        int fixed = Integer.numberOfTrailingZeros(~PackedBoard.rotatableMask(state));
+        test(objective, fixed + solution, SolutionVerifier.Status.ILLEGAL_ROTATION, 0);
+        for (int i = 45; i < 60; i++) {
+            for (int position : Utilities.nonRotatingTiles[i - 45])
+                test(Objective.OBJECTIVES[i], String.valueOf(position), SolutionVerifier.Status.ILLEGAL_ROTATION, 0);
+        }
+    }
+
+    @Test
+    public void testNotSolved() {
+        for (Objective objective : Objective.OBJECTIVES) {
+            String solution = solution(objective.getProblemNumber());
+            test(objective, solution.substring(0, solution.length() - 1), SolutionVerifier.Status.NOT_SOLVED, -1);
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        int n = Objective.OBJECTIVES.length;
+        Objective[] objectives = new Objective[2 * n];
+        String[] submissions = new String[2 * n];
+        for (int i = 0; i < n; i++) {
+            String solution = solution(i);
+            objectives[2 * i] = objectives[2 * i + 1] = Objective.OBJECTIVES[i];
+            submissions[2 * i] = solution;
+            submissions[2 * i + 1] = "9" + solution;
+        }
+        SolutionVerifier.Verdict[] verdicts = verifier.verify(objectives, submissions);
+        for (int i = 0; i < 2 * n; i++) {
+            SolutionVerifier.Status expected = i % 2 == 0 ? SolutionVerifier.Status.VALID
+                    : SolutionVerifier.Status.ILLEGAL_ROTATION;
+            assertEquals("expected " + expected + " for submission " + i + ", but got " + verdicts[i], expected,
+                    verdicts[i].getStatus());
+        }
+    }
+}
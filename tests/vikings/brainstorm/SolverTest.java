@@ -0,0 +1,89 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SolverTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    /**
+     * @return the number of tile grabs in a solution
+     */
+    private static int grabs(String solution) {
+        int grabs = 0;
+        for (int i = 0; i < solution.length(); i++) {
+            if (i == 0 || solution.charAt(i) != solution.charAt(i - 1))
+                grabs++;
+        }
+        return grabs;
+    }
+
+    private void assertSolves(Objective objective, String solution) {
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        for (int i = 0; i < solution.length(); i++) {
+            int position = solution.charAt(i) - '0';
+            assertTrue("Illegal rotation " + i + " of " + solution + " for " + objective,
+                    PackedBoard.canRotate(state, position));
+            state = PackedBoard.rotate(state, position);
+        }
+        String target = objective.getTargetPlacement();
+        assertTrue("Solution " + solution + " does not solve " + objective, PackedBoard.isSolved(state,
+                PackedBoard.boatsFromPlacement(target), PackedBoard.placementMask(target)));
+    }
+
+    @Test
+    public void testQuarterTurns() {
+        Solver solver = new Solver();
+        for (int i = 0; i < 15; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            String solution = solver.solve(objective.getInitialState(), objective.getTargetPlacement(),
+                    Solver.Metric.QUARTER_TURNS);
+            assertSolves(objective, solution);
+            assertEquals("Expected a shortest solution for " + objective,
+                    FindSolutionTest.SOLUTIONS[i][0].length(), solution.length());
+        }
+    }
+
+    @Test
+    public void testTileGrabs() {
+        Solver solver = new Solver();
+        for (int i = 0; i < 15; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            String solution = solver.solve(objective.getInitialState(), objective.getTargetPlacement(),
+                    Solver.Metric.TILE_GRABS);
+            assertSolves(objective, solution);
+            for (String expected : FindSolutionTest.SOLUTIONS[i])
+                assertTrue("Solution " + solution + " for " + objective + " takes more grabs than " + expected,
+                        grabs(solution) <= grabs(expected));
+        }
+        Objective objective = new Objective("Rv", "N0O1N1N0O1O2N0N1N2Rw", 0);
+        assertEquals("76", solver.solve(objective.getInitialState(), objective.getTargetPlacement(),
+                Solver.Metric.TILE_GRABS));
+    }
+
+    @Test
+    public void testMultipleTargets() {
+        Solver solver = new Solver();
+        String[] targets = new String[Objective.OBJECTIVES.length];
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = Objective.OBJECTIVES[i].getTargetPlacement();
+        for (int i = 0; i < 5; i++) {
+            String initialState = Objective.OBJECTIVES[i].getInitialState();
+            String[] solutions = solver.solve(initialState, targets);
+            assertEquals("Expected a solution for every target", targets.length, solutions.length);
+            for (int t = 0; t < targets.length; t++) {
+                Objective objective = new Objective(targets[t], initialState, 0);
+                String expected = solver.solve(initialState, targets[t]);
+                assertEquals("Expected a shortest solution for " + objective, expected.length(),
+                        solutions[t].length());
+                if (!expected.isEmpty())
+                    assertSolves(objective, solutions[t]);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StateBitmapTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    /**
+     * @return random ranks, clustered so that some containers become bitmaps
+     */
+    private static long[] randomRanks(Random random, int n) {
+        long[] ranks = new long[n];
+        for (int i = 0; i < n; i++) {
+            long key = random.nextInt(8) * 1000L + random.nextInt(2);
+            ranks[i] = key << 16 | random.nextInt(1 << 16);
+        }
+        return ranks;
+    }
+
+    private static void assertSame(TreeSet<Long> expected, StateBitmap bitmap) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        List<Long> ranks = new ArrayList<>();
+        bitmap.forEach(ranks::add);
+        assertEquals(new ArrayList<>(expected), ranks);
+        for (long rank : expected)
+            assertTrue(bitmap.contains(rank));
+    }
+
+    @Test
+    public void testAdd() {
+        Random random = new Random(39);
+        TreeSet<Long> expected = new TreeSet<>();
+        StateBitmap bitmap = new StateBitmap();
+        for (long rank : randomRanks(random, 40000))
+            assertEquals(expected.add(rank), bitmap.add(rank));
+        assertSame(expected, bitmap);
+        assertFalse(bitmap.contains(12345L << 16));
+    }
+
+    @Test
+    public void testOrAndNot() {
+        Random random = new Random(390);
+        for (int n : new int[]{100, 5000, 40000}) {
+            TreeSet<Long> a = new TreeSet<>(), b = new TreeSet<>();
+            StateBitmap x = new StateBitmap(), y = new StateBitmap();
+            for (long rank : randomRanks(random, n)) {
+                a.add(rank);
+                x.add(rank);
+            }
+            for (long rank : randomRanks(random, n)) {
+                b.add(rank);
+                y.add(rank);
+            }
+            a.addAll(b);
+            x.or(y);
+            assertSame(a, x);
+            a.removeAll(b);
+            x.andNot(y);
+            assertSame(a, x);
+            x.andNot(x);
+            assertTrue(x.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRank() {
+        for (Objective objective : Objective.OBJECTIVES) {
+            long state = PackedBoard.fromBoardString(objective.getInitialState());
+            long rank = PackedBoard.rank(state);
+            assertTrue(rank >= 0 && rank < PackedBoard.NUM_RANKS);
+            assertEquals(state, PackedBoard.unrank(rank, state));
+        }
+    }
+
+    @Test
+    public void testReachable() {
+        for (int i = 0; i < 10; i++) {
+            String board = Objective.OBJECTIVES[i].getInitialState();
+            StateBitmap reachable = StateBitmap.reachable(board);
+            long types = PackedBoard.fromBoardString(board);
+            StateSet expected = new StateSet();
+            List<Long> queue = new ArrayList<>();
+            queue.add(PackedBoard.fromBoardString(board));
+            expected.add(queue.get(0), 0);
+            for (int head = 0; head < queue.size(); head++) {
+                long state = queue.get(head);
+                assertTrue(reachable.contains(PackedBoard.rank(state)));
+                for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+                    if (PackedBoard.canRotate(state, p) && expected.add(PackedBoard.rotate(state, p), 0))
+                        queue.add(PackedBoard.rotate(state, p));
+                }
+            }
+            assertEquals(queue.size(), reachable.cardinality());
+            reachable.forEach(rank -> assertTrue(expected.contains(PackedBoard.unrank(rank, types))));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TablebaseTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(5000);
+
+    /**
+     * Follow the best moves from the initial state, checking that each is
+     * legal and brings the target one rotation closer.
+     */
+    private void assertHints(Tablebase tablebase, Objective objective, int expected) {
+        long state = PackedBoard.fromBoardString(objective.getInitialState());
+        assertEquals("Wrong distance for " + objective, expected, tablebase.distance(state));
+        for (int distance = expected; distance > 0; distance--) {
+            int position = tablebase.bestMove(state);
+            assertTrue("Illegal best move " + position + " for " + objective, position >= 0
+                    && PackedBoard.canRotate(state, position));
+            state = PackedBoard.rotate(state, position);
+            assertEquals("Expected the best move to get closer for " + objective, distance - 1,
+                    tablebase.distance(state));
+        }
+        assertTrue("Expected the best moves to solve " + objective, tablebase.isSolved(state));
+        assertEquals("Expected no best move once solved", -1, tablebase.bestMove(state));
+    }
+
+    @Test
+    public void testBuild() {
+        for (int i = 0; i < 15; i++) {
+            Objective objective = Objective.OBJECTIVES[i];
+            int expected = FindSolutionTest.SOLUTIONS[i][0].length();
+            Tablebase tablebase = Tablebase.build(objective);
+            assertHints(tablebase, objective, expected);
+            assertTrue("Expected " + objective + " solvable within " + expected,
+                    tablebase.isSolvableWithin(objective.getInitialState(), expected));
+            assertFalse("Expected " + objective + " not solvable within " + (expected - 1),
+                    tablebase.isSolvableWithin(objective.getInitialState(), expected - 1));
+            assertTrue("Expected a largest distance of at least " + expected,
+                    tablebase.getMaxDistance() >= expected);
+        }
+    }
+
+    @Test
+    public void testUnknown() {
+        Tablebase tablebase = Tablebase.build(Objective.OBJECTIVES[0]);
+        String other = Objective.OBJECTIVES[1].getInitialState();
+        assertEquals("Expected no distance for another objective's state", -1, tablebase.distance(other));
+        assertEquals("Expected no best move for another objective's state", -1, tablebase.bestMove(other));
+        assertFalse("Expected an unknown state not to be solvable", tablebase.isSolvableWithin(other, 100));
+
+        Tablebase unsolvable = Tablebase.build("N0O1N1N0O0O1N0N3N1Rt", "Ra");
+        assertEquals("Expected an empty tablebase for an unsolvable objective", 0, unsolvable.size());
+        assertEquals("Expected no distance in an empty tablebase", -1, unsolvable.distance("N0O1N1N0O0O1N0N3N1Rt"));
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        // a master objective, whose distances need 7 bits
+        Objective objective = Objective.OBJECTIVES[58];
+        Tablebase built = Tablebase.build(objective);
+        Path file = Files.createTempFile("vikings", ".vtb");
+        try {
+            built.write(file);
+            Tablebase opened = Tablebase.open(file);
+            assertEquals("Expected the same number of states", built.size(), opened.size());
+            assertEquals("Expected the same largest distance", built.getMaxDistance(), opened.getMaxDistance());
+            assertHints(opened, objective, built.distance(objective.getInitialState()));
+
+            Files.write(file, new byte[]{1, 2, 3});
+            try {
+                Tablebase.open(file);
+                fail("Expected a bad file to be rejected");
+            } catch (IOException expected) {
+                // expected
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
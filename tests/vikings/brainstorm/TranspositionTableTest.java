@@ -0,0 +1,93 @@
+package vikings.brainstorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TranspositionTableTest {
+    @Rule
+    public Timeout globalTimeout = Timeout.millis(10000);
+
+    private static final long STATE = PackedBoard.fromBoardString("N0O1N1N0O0O1N0N3N1Rt");
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(4);
+        assertEquals("Expected a miss in an empty table", TranspositionTable.MISS, table.probe(STATE));
+        table.store(STATE, 5, 3);
+        long data = table.probe(STATE);
+        assertEquals("Wrong g", 5, TranspositionTable.g(data));
+        assertEquals("Wrong bound", 3, TranspositionTable.bound(data));
+        // the shorter distance and the larger bound are kept
+        table.store(STATE, 7, 9);
+        table.store(STATE, 2, 1);
+        data = table.probe(STATE);
+        assertEquals("Expected the smallest g", 2, TranspositionTable.g(data));
+        assertEquals("Expected the largest bound", 9, TranspositionTable.bound(data));
+        table.store(STATE, 0, 0);
+        assertEquals("Expected g 0 to be stored", 0, TranspositionTable.g(table.probe(STATE)));
+        table.clear();
+        assertEquals("Expected no probes after clearing", 0, table.getProbes());
+        assertEquals("Expected a miss after clearing", TranspositionTable.MISS, table.probe(STATE));
+    }
+
+    @Test
+    public void testReplacement() {
+        // with two slots, states soon collide
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(STATE, 1, 20);
+        // six distinct states: tile 3 rotated 1-3 times, then also tile 7 once
+        long[] others = new long[6];
+        others[0] = PackedBoard.rotate(STATE, 3);
+        for (int i = 1; i < 3; i++)
+            others[i] = PackedBoard.rotate(others[i - 1], 3);
+        for (int i = 3; i < 6; i++)
+            others[i] = PackedBoard.rotate(others[i - 3], 7);
+        for (long other : others)
+            table.store(other, 1, 10);
+        assertEquals("Expected the deeper entry to be kept", 20, TranspositionTable.bound(table.probe(STATE)));
+        int kept = 0;
+        for (long other : others) {
+            if (table.probe(other) != TranspositionTable.MISS)
+                kept++;
+        }
+        assertTrue("Expected at most one other entry, not " + kept, kept <= 1);
+        assertTrue("Expected collisions to be counted", table.getCollisionRate() > 0);
+    }
+
+    @Test
+    public void testSolve() {
+        TranspositionTable table = new TranspositionTable(16);
+        for (int i = 0; i < 15; i++) {
+            table.clear();
+            String solution = new IdaSolver(table).solve(Objective.OBJECTIVES[i]);
+            assertEquals("Expected a shortest solution for " + Objective.OBJECTIVES[i],
+                    FindSolutionTest.SOLUTIONS[i][0].length(), solution.length());
+            assertTrue("Expected a hit rate, not " + table.getHitRate(),
+                    table.getHitRate() >= 0 && table.getHitRate() <= 1);
+        }
+        assertEquals("Expected no solution", "", new IdaSolver(table).solve("N0O1N1N0O0O1N0N3N1Rt", "Ra"));
+    }
+
+    @Test
+    public void testShared() throws InterruptedException {
+        // a small table, so that threads overwrite each other's entries
+        TranspositionTable table = new TranspositionTable(10);
+        Objective objective = Objective.OBJECTIVES[13];
+        int expected = FindSolutionTest.SOLUTIONS[13][0].length();
+        String[] solutions = new String[4];
+        Thread[] threads = new Thread[solutions.length];
+        for (int t = 0; t < threads.length; t++) {
+            int index = t;
+            threads[t] = new Thread(() -> solutions[index] = new IdaSolver(table).solve(objective));
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (String solution : solutions)
+            assertEquals("Expected a shortest solution from every thread", expected, solution.length());
+    }
+}
@@ -1,5 +1,7 @@
 package vikings.brainstorm;
 
+import java.util.SplittableRandom;
+
 public class Utilities {
 
     public static String[] badBoats = {
@@ -183,4 +185,123 @@ public class Utilities {
             {1, 4} // Obj 19
     };
 
+    /* characters that malformed boards are built from: every legal character, and some near misses */
+    private static final String MUTATION_CHARACTERS = "NOBGRY0123abcdefghijklmnopqrstuvwxnoXZ4/`y";
+
+    /**
+     * @param random a source of randomness
+     * @return a well-formed board string: six 'N' and three 'O' tiles in a
+     * random order and orientations, and a random non-empty set of boats on
+     * random edges, which may coincide
+     */
+    public static String randomWellFormedBoard(SplittableRandom random) {
+        char[] types = "NNNNNNOOO".toCharArray();
+        StringBuilder board = new StringBuilder(26);
+        for (int p = 0; p < Tile.NUM_POSITIONS; p++) {
+            int pick = p + random.nextInt(Tile.NUM_POSITIONS - p);
+            char type = types[pick];
+            types[pick] = types[p];
+            board.append(type).append((char) ('0' + random.nextInt(4)));
+        }
+        int boats = 1 + random.nextInt(15); // a non-empty subset of BGRY
+        for (int c = 0; c < 4; c++) {
+            if ((boats >> c & 1) != 0)
+                board.append("BGRY".charAt(c)).append((char) ('a' + random.nextInt(24)));
+        }
+        return board.toString();
+    }
+
+    /**
+     * @param random a source of randomness
+     * @return a valid board string: tiles placed in order, each in the
+     * first orientation from a random start that does not overlap the tiles
+     * to its left and above (starting again at a dead end), and a random
+     * non-empty set of boats on distinct random edges
+     */
+    public static String randomValidBoard(SplittableRandom random) {
+        while (true) {
+            char[] types = "NNNNNNOOO".toCharArray();
+            long state = PackedBoard.BOATS_MASK << PackedBoard.BOAT_SHIFT; // no boats yet
+            int p = 0;
+            for (; p < Tile.NUM_POSITIONS; p++) {
+                int pick = p + random.nextInt(Tile.NUM_POSITIONS - p);
+                char type = types[pick];
+                types[pick] = types[p];
+                long placed = state | (type == 'O' ? 1L << (PackedBoard.TYPE_SHIFT + p) : 0);
+                int start = random.nextInt(4);
+                int k = 0;
+                for (; k < 4; k++) {
+                    state = placed | (long) ((start + k) & 3) << (2 * p);
+                    if (!(p % 3 > 0 && PackedBoard.doTilesOverlap(state, p - 1, p))
+                            && !(p >= 3 && PackedBoard.doTilesOverlap(state, p - 3, p)))
+                        break;
+                }
+                if (k == 4)
+                    break;
+            }
+            if (p < Tile.NUM_POSITIONS)
+                continue;
+            StringBuilder board = new StringBuilder(PackedBoard.toBoardString(state));
+            int boats = 1 + random.nextInt(15); // a non-empty subset of BGRY
+            int used = 0;
+            for (int c = 0; c < 4; c++) {
+                if ((boats >> c & 1) == 0)
+                    continue;
+                int edge;
+                do {
+                    edge = random.nextInt(24);
+                } while ((used >> edge & 1) != 0);
+                used |= 1 << edge;
+                board.append("BGRY".charAt(c)).append((char) ('a' + edge));
+            }
+            return board.toString();
+        }
+    }
+
+    /**
+     * @param random a source of randomness
+     * @return a well-formed board string with one to three random
+     * mutations: a character replaced, deleted or inserted, a tile or boat
+     * repeated, two boats swapped, or the string truncated. The result is
+     * usually, but not always, malformed.
+     */
+    public static String randomMalformedBoard(SplittableRandom random) {
+        StringBuilder board = new StringBuilder(randomWellFormedBoard(random));
+        for (int mutations = 1 + random.nextInt(3); mutations > 0; mutations--) {
+            int length = board.length();
+            int i = length == 0 ? 0 : random.nextInt(length);
+            char c = MUTATION_CHARACTERS.charAt(random.nextInt(MUTATION_CHARACTERS.length()));
+            switch (random.nextInt(6)) {
+                case 0:
+                    if (length > 0)
+                        board.setCharAt(i, c);
+                    break;
+                case 1:
+                    if (length > 0)
+                        board.deleteCharAt(i);
+                    break;
+                case 2:
+                    board.insert(i, c);
+                    break;
+                case 3:
+                    i &= ~1;
+                    board.insert(i, board.substring(i, Math.min(i + 2, length)));
+                    break;
+                case 4:
+                    int boats = (length - 18) / 2;
+                    if (boats >= 2) {
+                        int a = 18 + 2 * random.nextInt(boats);
+                        int b = 18 + 2 * random.nextInt(boats);
+                        String boat = board.substring(a, a + 2);
+                        board.replace(a, a + 2, board.substring(b, b + 2));
+                        board.replace(b, b + 2, boat);
+                    }
+                    break;
+                default:
+                    board.setLength(i);
+                    break;
+            }
+        }
+        return board.toString();
+    }
 }